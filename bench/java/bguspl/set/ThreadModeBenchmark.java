@@ -0,0 +1,136 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the platform and virtual thread modes of the players by the number of OS threads and the memory used while
+ * a headless game with many computer players is running.
+ * <p>
+ * Usage: compile together with main/java (e.g. javac -d out $(find main/java bench/java -name "*.java")) and run
+ * java -cp out bguspl.set.ThreadModeBenchmark [player counts], e.g. "10,100,1000,10000" (the default).
+ * The virtual mode is skipped on JVMs without virtual threads (before Java 21).
+ */
+public class ThreadModeBenchmark {
+
+    /**
+     * How long each game is played before it is sampled.
+     */
+    private static final long SAMPLE_DELAY_MILLIS = 2000;
+
+    private static final PrintStream console = System.out;
+
+    public static void main(String[] args) throws InterruptedException {
+        String counts = args.length > 0 ? args[0] : "10,100,1000,10000";
+        Logger logger = Logger.getLogger("ThreadModeBenchmark");
+        logger.setUseParentHandlers(false);
+
+        console.printf("%-8s %8s %16s %16s %12s %12s%n", "mode", "players", "threads created", "OS threads", "heap (MB)", "rss (MB)");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // the game threads log their start and end
+        try {
+            for (String count : counts.split(",")) {
+                int players = Integer.parseInt(count.trim());
+                run(logger, players, false);
+                if (VirtualThreads.supported())
+                    run(logger, players, true);
+                else
+                    console.printf("%-8s %8d %16s%n", "virtual", players, "not supported by Java " + System.getProperty("java.version"));
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Plays a game with the given number of computer players, samples it and terminates it.
+     */
+    private static void run(Logger logger, int playerCount, boolean virtual) throws InterruptedException {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", Integer.toString(playerCount));
+        properties.setProperty("VirtualThreads", Boolean.toString(virtual));
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("PointFreezeSeconds", "0.1");
+        properties.setProperty("PenaltyFreezeSeconds", "0.1");
+        Config config = new Config(logger, properties);
+        logger.setLevel(Level.OFF);
+        Util util = new UtilImpl(config);
+
+        AtomicInteger created = new AtomicInteger();
+        ThreadFactory factory = config.virtualThreads ? VirtualThreads.factory(logger) : Thread::new;
+        ThreadFactory threads = runnable -> {
+            created.incrementAndGet();
+            return factory.newThread(runnable);
+        };
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util, threads);
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        collectGarbage();
+        long heapBefore = usedHeap();
+        long rssBefore = residentSetSize();
+        Throwable[] failure = new Throwable[1];
+        Thread dealerThread = new Thread(() -> {
+            try {
+                dealer.run();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "dealer");
+
+        dealerThread.start();
+        Thread.sleep(SAMPLE_DELAY_MILLIS);
+        int osThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heap = usedHeap() - heapBefore;
+        long rss = residentSetSize() - rssBefore;
+        dealer.terminate();
+        dealerThread.join();
+
+        if (failure[0] != null) // e.g. OutOfMemoryError: unable to create native thread
+            console.printf("%-8s %8d %16s%n", virtual ? "virtual" : "platform", playerCount, "failed: " + failure[0]);
+        else
+            console.printf("%-8s %8d %16d %16d %12.1f %12s%n", virtual ? "virtual" : "platform", playerCount,
+                    created.get(), osThreads, heap / 1e6, rss < 0 ? "n/a" : String.format("%.1f", rss / 1e6));
+    }
+
+    private static void collectGarbage() throws InterruptedException {
+        System.gc();
+        Thread.sleep(100);
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return - the resident set size of the process in bytes (-1 if not available on this OS).
+     */
+    private static long residentSetSize() {
+        Path status = Paths.get("/proc/self/status");
+        try {
+            for (String line : Files.readAllLines(status))
+                if (line.startsWith("VmRSS:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+        } catch (IOException | RuntimeException ignored) {}
+        return -1;
+    }
+}
@@ -0,0 +1,234 @@
+package bguspl.set;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Micro benchmarks for the set engine of UtilImpl (testSet, findSets, streamSets and cardsToFeatures).
+ * Each benchmark is warmed up and then measured in several iterations, reporting the time and the heap allocation
+ * per operation. The allocation is summed over all the threads, so it includes the work of the fork/join workers of
+ * parallel searches (but not of workers that terminate while measured).
+ * <p>
+ * This is not JMH. To keep the JIT profile of one benchmark from shaping the next, every benchmark runs in a fresh
+ * JVM by default; with --in-process all of them run in this JVM, and the later ones are measured after the JIT was
+ * shaped by the earlier ones.
+ * <p>
+ * Usage: compile together with main/java (e.g. javac -d out $(find main/java bench/java -name "*.java")) and run
+ * java -cp out bguspl.set.UtilBenchmark [name filter] [--in-process], e.g. with the filter "3^4" for the classic
+ * deck only.
+ */
+public class UtilBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+
+    /**
+     * The number of random inputs each benchmark cycles through (so results do not depend on a single input).
+     */
+    private static final int INPUTS = 1024;
+
+    /**
+     * Prevents the JIT from eliminating the benchmarked calls.
+     */
+    private static long blackhole;
+
+    /**
+     * The argument running a single benchmark (given by its exact name) in a child JVM.
+     */
+    private static final String CHILD = "--child";
+
+    private interface Operation {
+        long run(int input);
+    }
+
+    /**
+     * Selects the benchmarks to run: the ones whose name contains the filter (or equals it, in a child JVM).
+     */
+    private static String filter;
+    private static boolean exact;
+
+    /**
+     * If not null, the names of the selected benchmarks are only collected here, not run.
+     */
+    private static List<String> names;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Logger logger = Logger.getLogger("UtilBenchmark");
+        logger.setUseParentHandlers(false);
+        if (args.length > 1 && args[0].equals(CHILD)) {
+            filter = args[1];
+            exact = true;
+            benchmarkAll(logger);
+            return;
+        }
+
+        List<String> options = new ArrayList<>(List.of(args));
+        boolean inProcess = options.remove("--in-process");
+        filter = options.isEmpty() ? "" : options.get(0);
+        System.out.printf("%-45s %14s %14s %14s%n", "benchmark", "ns/op", "error (ns)", "bytes/op");
+        if (inProcess) {
+            benchmarkAll(logger);
+            return;
+        }
+
+        names = new ArrayList<>();
+        benchmarkAll(logger);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (String name : names) {
+            Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    UtilBenchmark.class.getName(), CHILD, name).inheritIO().start();
+            if (child.waitFor() != 0)
+                System.out.printf("%-45s failed%n", name);
+        }
+    }
+
+    private static void benchmarkAll(Logger logger) {
+        benchmarkFeatureSpace(logger, 3, 4, new int[]{12, 15, 21});
+        benchmarkFeatureSpace(logger, 3, 6, new int[]{12, 21, 81});
+        benchmarkFeatureSpace(logger, 4, 4, new int[]{16, 28});
+    }
+
+    private static void benchmarkFeatureSpace(Logger logger, int featureSize, int featureCount, int[] tableSizes) {
+        Properties properties = new Properties();
+        properties.setProperty("LogLevel", "OFF");
+        properties.setProperty("FeatureSize", Integer.toString(featureSize));
+        properties.setProperty("FeatureCount", Integer.toString(featureCount));
+        Config config = new Config(logger, properties);
+        logger.setLevel(Level.OFF);
+        Util util = new UtilImpl(config);
+        String space = featureSize + "^" + featureCount;
+        Random random = new Random(42);
+
+        // random candidates of featureSize cards, a third of them completed to a legal set
+        int[][] candidates = new int[INPUTS][];
+        for (int i = 0; i < INPUTS; ++i) {
+            List<Integer> cards = randomCards(config, random, featureSize);
+            if (i % 3 == 0) {
+                int[] partial = cards.subList(0, featureSize - 1).stream().mapToInt(Integer::intValue).toArray();
+                int completion = util.completeSet(partial);
+                if (completion >= 0 && !cards.subList(0, featureSize - 1).contains(completion))
+                    cards.set(featureSize - 1, completion);
+            }
+            candidates[i] = cards.stream().mapToInt(Integer::intValue).toArray();
+        }
+        int[][] features = new int[featureSize][featureCount];
+
+        run("testSet(int[]) " + space, i -> util.testSet(candidates[i]) ? 1 : 0);
+        if (featureSize == 3)
+            run("testSet(a, b, c) " + space, i -> {
+                int[] cards = candidates[i];
+                return util.testSet(cards[0], cards[1], cards[2]) ? 1 : 0;
+            });
+        run("cardsToFeatures(int[]) " + space, i -> util.cardsToFeatures(candidates[i]).length);
+        run("cardsToFeatures(int[], int[][]) " + space, i -> {
+            util.cardsToFeatures(candidates[i], features);
+            return features[0][0];
+        });
+
+        for (int tableSize : tableSizes) {
+            List<List<Integer>> tables = new ArrayList<>(INPUTS);
+            for (int i = 0; i < INPUTS; ++i)
+                tables.add(randomCards(config, random, tableSize));
+            run("findSets(" + tableSize + " cards, all) " + space, i -> util.findSets(tables.get(i), Integer.MAX_VALUE).size());
+            run("findSets(" + tableSize + " cards, 1) " + space, i -> util.findSets(tables.get(i), 1).size());
+            run("streamSets(" + tableSize + " cards).count() " + space, i -> util.streamSets(tables.get(i)).count());
+        }
+
+        // full deck scans, as in the end of game checks
+        List<Integer> deck = randomCards(config, random, config.deckSize);
+        run("findSets(full deck of " + config.deckSize + ", 1) " + space, i -> util.findSets(deck, 1).size());
+        run("findSets(full deck of " + config.deckSize + ", all) " + space, i -> util.findSets(deck, Integer.MAX_VALUE).size());
+    }
+
+    private static List<Integer> randomCards(Config config, Random random, int count) {
+        List<Integer> cards = new ArrayList<>(config.deckSize);
+        for (int card = 0; card < config.deckSize; ++card)
+            cards.add(card);
+        Collections.shuffle(cards, random);
+        return new ArrayList<>(cards.subList(0, Math.min(count, cards.size())));
+    }
+
+    /**
+     * Runs a benchmark (if its name matches the filter) and prints its results.
+     */
+    private static void run(String name, Operation operation) {
+        if (exact ? !name.equals(filter) : !name.contains(filter)) return;
+        if (names != null) {
+            names.add(name);
+            return;
+        }
+
+        long operations = calibrate(operation);
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i)
+            measure(operation, operations);
+
+        double[] nanosPerOperation = new double[MEASURED_ITERATIONS];
+        double bytesPerOperation = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            long[] result = measure(operation, operations);
+            nanosPerOperation[i] = (double) result[0] / operations;
+            bytesPerOperation += (double) result[1] / operations / MEASURED_ITERATIONS;
+        }
+
+        double mean = 0, variance = 0;
+        for (double value : nanosPerOperation) mean += value / MEASURED_ITERATIONS;
+        for (double value : nanosPerOperation) variance += (value - mean) * (value - mean) / (MEASURED_ITERATIONS - 1);
+        System.out.printf("%-45s %14.1f %14.1f %14.1f%n", name, mean, Math.sqrt(variance), bytesPerOperation);
+    }
+
+    /**
+     * @return - the number of operations that take about ITERATION_NANOS.
+     */
+    private static long calibrate(Operation operation) {
+        long operations = 1;
+        while (true) {
+            long nanos = measure(operation, operations)[0];
+            if (nanos >= ITERATION_NANOS / 10) return Math.max(1, operations * ITERATION_NANOS / nanos);
+            operations *= 2;
+        }
+    }
+
+    /**
+     * @return - the elapsed nanoseconds and the bytes allocated by all the threads while running the operations.
+     */
+    private static long[] measure(Operation operation, long operations) {
+        Map<Long, Long> bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long sink = 0;
+        for (long i = 0; i < operations; ++i)
+            sink += operation.run((int) (i % INPUTS));
+        long elapsed = System.nanoTime() - start;
+        long bytes = 0;
+        for (Map.Entry<Long, Long> thread : allocatedBytes().entrySet()) // threads started meanwhile count from 0
+            bytes += thread.getValue() - bytesBefore.getOrDefault(thread.getKey(), 0L);
+        blackhole += sink;
+        return new long[]{elapsed, bytes};
+    }
+
+    /**
+     * @return - the bytes allocated so far by each live thread (by thread id).
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        Map<Long, Long> bytes = new HashMap<>();
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) { // allocation counters are a HotSpot extension
+            long[] ids = bean.getAllThreadIds();
+            long[] allocated = ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; ++i)
+                if (allocated[i] >= 0) bytes.put(ids[i], allocated[i]); // -1 if the thread terminated meanwhile
+        }
+        return bytes;
+    }
+}
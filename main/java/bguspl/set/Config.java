@@ -36,6 +36,11 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The minimal number of cards for which sets are searched in parallel (0 to always search sequentially)
+     */
+    public final int parallelFindSetsThreshold;
+
     /**
      * The number of human players in the game.
      */
@@ -51,6 +56,47 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * Whether to run the player and computer player threads as virtual threads (requires Java 21)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * The number of pending key presses kept for each player (older presses of human players are dropped beyond it)
+     */
+    public final int keyPressBufferSize;
+
+    /**
+     * The AI strategy of each player (random, oracle or skilled), used if the player is a computer player
+     */
+    public final String[] aiStrategies;
+
+    /**
+     * The probability that a skilled computer player goes for a real set in a key press
+     */
+    public final double aiSkill;
+
+    /**
+     * The average number of milliseconds a skilled computer player thinks before a key press
+     */
+    public final long aiLatencyMillis;
+
+    /**
+     * The number of key presses per second the AI scheduler generates for each computer player (0 or less to let the
+     * player's own thread generate key presses as fast as they are handled)
+     */
+    public final double[] aiPressesPerSecond;
+
+    /**
+     * The seed of the game's randomness (0 for a random seed)
+     */
+    public final long randomSeed;
+
+    /**
+     * The file to record the game to, for a replay (empty for none)
+     */
+    public final String gameLogFile;
+
     /**
      * Whether to print out hints to the console or not
      */
@@ -66,6 +112,16 @@ public class Config {
      */
     public final long turnTimeoutWarningMillis;
 
+    /**
+     * The number of times per second the timer display is refreshed
+     */
+    public final int timerRefreshHz;
+
+    /**
+     * The number of times per second the timer display is refreshed while the turn countdown warning is displayed
+     */
+    public final int timerWarningRefreshHz;
+
     /**
      * The number of milliseconds a player gets frozen for when he scores a point
      */
@@ -155,7 +211,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -197,15 +253,39 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        parallelFindSetsThreshold = Integer.parseInt(properties.getProperty("ParallelFindSetsThreshold", "256"));
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        int bufferSize = Integer.parseInt(properties.getProperty("KeyPressBufferSize", "3"));
+        if (bufferSize <= 0) {
+            logger.severe("invalid key press buffer size: " + bufferSize + ", using the default (3)");
+            bufferSize = 3;
+        }
+        keyPressBufferSize = bufferSize;
+        String aiStrategy = properties.getProperty("AiStrategy", "random").trim();
+        aiStrategies = new String[players];
+        Arrays.setAll(aiStrategies, i -> properties.getProperty("AiStrategy" + (i + 1), aiStrategy).trim());
+        aiSkill = Double.parseDouble(properties.getProperty("AiSkill", "0.5"));
+        if (aiSkill < 0 || aiSkill > 1)
+            logger.severe("invalid ai skill: " + aiSkill);
+        aiLatencyMillis = (long) (Double.parseDouble(properties.getProperty("AiLatencySeconds", "0.5")) * 1000.0);
+        String aiPresses = properties.getProperty("AiPressesPerSecond", "0");
+        aiPressesPerSecond = new double[players];
+        Arrays.setAll(aiPressesPerSecond, i -> Double.parseDouble(properties.getProperty("AiPressesPerSecond" + (i + 1), aiPresses)));
+        randomSeed = Long.parseLong(properties.getProperty("RandomSeed", "0").trim());
+        gameLogFile = properties.getProperty("GameLogFile", "").trim();
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
+        timerRefreshHz = Integer.parseInt(properties.getProperty("TimerRefreshHz", "30"));
+        timerWarningRefreshHz = Integer.parseInt(properties.getProperty("TimerWarningRefreshHz", "100"));
+        if (timerRefreshHz <= 0 || timerWarningRefreshHz <= 0)
+            logger.severe("invalid timer refresh rates: " + timerRefreshHz + " " + timerWarningRefreshHz);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
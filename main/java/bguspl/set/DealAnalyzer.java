@@ -0,0 +1,244 @@
+package bguspl.set;
+
+import bguspl.set.ex.IntDeck;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+/**
+ * Estimates the statistics of the deals of a configuration (table size, feature size and feature count) by Monte
+ * Carlo simulation: how often a dealt table has no legal set, how many sets a table has, and how many reshuffles a
+ * game needs. The deals are drawn like the dealer draws them, and the simulation is split over all the cores with a
+ * fork/join pool, each task with its own random stream split from the seed.
+ * <p>
+ * A game is simulated as the dealer plays it with no turn timeout: a set on the table is removed and the table is
+ * refilled, and when the table has no set the cards are reshuffled into the deck and dealt again, until no set is
+ * left in the deck and on the table.
+ * <p>
+ * Usage: java bguspl.set.DealAnalyzer [number of deals] [number of games] [configuration file name]
+ * The seed is the configuration's RandomSeed (a random seed if it is 0).
+ */
+public class DealAnalyzer {
+
+    /**
+     * The number of deals (or games) simulated by a single task without splitting it.
+     */
+    private static final int dealsPerTask = 1 << 14, gamesPerTask = 1 << 6;
+
+    private final Util util;
+    private final int deckSize;
+    private final int tableSize;
+
+    /**
+     * True iff a set is determined by a pair of its cards, so the sets on a table can be counted pair by pair.
+     */
+    private final boolean pairs;
+
+    public DealAnalyzer(Config config, Util util) {
+        this.util = util;
+        deckSize = config.deckSize;
+        tableSize = config.tableSize;
+        pairs = config.featureSize == 3;
+    }
+
+    /**
+     * Summary statistics of simulated deals and games (mergeable, so tasks can be combined in any order).
+     */
+    public static class Stats {
+
+        long deals;
+
+        /**
+         * The number of dealt tables with each number of sets (the last entry counts all the larger numbers too).
+         */
+        final long[] setsPerTable = new long[32];
+        long sets;
+
+        long games;
+        long reshuffles;
+        long maxReshuffles;
+        long gamesWithReshuffle;
+        long setsPerGame;
+        long cardsLeft;
+
+        void merge(Stats other) {
+            deals += other.deals;
+            for (int i = 0; i < setsPerTable.length; i++)
+                setsPerTable[i] += other.setsPerTable[i];
+            sets += other.sets;
+            games += other.games;
+            reshuffles += other.reshuffles;
+            maxReshuffles = Math.max(maxReshuffles, other.maxReshuffles);
+            gamesWithReshuffle += other.gamesWithReshuffle;
+            setsPerGame += other.setsPerGame;
+            cardsLeft += other.cardsLeft;
+        }
+
+        void recordTable(long setsOnTable) {
+            deals++;
+            sets += setsOnTable;
+            setsPerTable[(int) Math.min(setsOnTable, setsPerTable.length - 1)]++;
+        }
+
+        void recordGame(long gameReshuffles, long gameSets, int gameCardsLeft) {
+            games++;
+            reshuffles += gameReshuffles;
+            maxReshuffles = Math.max(maxReshuffles, gameReshuffles);
+            if (gameReshuffles > 0) gamesWithReshuffle++;
+            setsPerGame += gameSets;
+            cardsLeft += gameCardsLeft;
+        }
+    }
+
+    /**
+     * Simulates a range of deals or games, splitting it in two halves while it is larger than a single task.
+     */
+    private class Simulation extends RecursiveTask<Stats> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long deals;
+        private final long games;
+        private final SplittableRandom random;
+
+        Simulation(long deals, long games, SplittableRandom random) {
+            this.deals = deals;
+            this.games = games;
+            this.random = random;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (deals <= dealsPerTask && games <= gamesPerTask) {
+                Stats stats = new Stats();
+                IntDeck deck = IntDeck.full(deckSize);
+                IntDeck table = new IntDeck(tableSize);
+                boolean[] onTable = new boolean[deckSize];
+                int[] pair = new int[2];
+                for (long i = 0; i < deals; i++)
+                    deal(deck, table, onTable, pair, stats);
+                for (long i = 0; i < games; i++)
+                    game(stats);
+                return stats;
+            }
+            // the left half gets a stream split off this one, so the results depend on the seed only
+            Simulation left = new Simulation(deals / 2, games / 2, random.split());
+            Simulation right = new Simulation(deals - deals / 2, games - games / 2, random);
+            left.fork();
+            Stats stats = right.compute();
+            stats.merge(left.join());
+            return stats;
+        }
+
+        /**
+         * Deals a table from a full deck, counts its sets and returns the cards to the deck.
+         */
+        private void deal(IntDeck deck, IntDeck table, boolean[] onTable, int[] pair, Stats stats) {
+            while (table.size() < tableSize && !deck.isEmpty())
+                table.add(deck.draw(random));
+            stats.recordTable(pairs ? countSets(table, onTable, pair) : util.streamSets(table.asList()).count());
+            while (!table.isEmpty())
+                deck.add(table.draw(random));
+        }
+
+        /**
+         * Counts the sets on a table by completing every pair of its cards (each set is counted by its two smallest
+         * cards).
+         *
+         * @param onTable - all false (and left so).
+         * @param pair    - a buffer for a pair of cards.
+         */
+        private long countSets(IntDeck table, boolean[] onTable, int[] pair) {
+            for (int i = 0; i < table.size(); i++)
+                onTable[table.get(i)] = true;
+            long sets = 0;
+            for (int i = 0; i < table.size(); i++)
+                for (int j = i + 1; j < table.size(); j++) {
+                    pair[0] = table.get(i);
+                    pair[1] = table.get(j);
+                    int third = util.completeSet(pair);
+                    if (third > pair[0] && third > pair[1] && onTable[third]) sets++;
+                }
+            for (int i = 0; i < table.size(); i++)
+                onTable[table.get(i)] = false;
+            return sets;
+        }
+
+        /**
+         * Plays a game like the dealer does (claims are always legal sets, and the turn never times out).
+         */
+        private void game(Stats stats) {
+            IntDeck deck = IntDeck.full(deckSize);
+            IntDeck table = new IntDeck(tableSize);
+            long reshuffles = 0, sets = 0;
+            while (true) {
+                while (table.size() < tableSize && !deck.isEmpty())
+                    table.add(deck.draw(random));
+                Optional<int[]> set = util.streamSets(table.asList()).findFirst();
+                if (set.isPresent()) {
+                    for (int card : set.get())
+                        table.remove(card);
+                    sets++;
+                    continue;
+                }
+                // reshuffle: return the table to the deck, and stop if no set is left at all
+                while (!table.isEmpty())
+                    deck.add(table.draw(random));
+                if (util.streamSets(deck.asList()).findAny().isEmpty())
+                    break;
+                reshuffles++;
+            }
+            stats.recordGame(reshuffles, sets, deck.size());
+        }
+    }
+
+    /**
+     * Runs the simulation on a fork/join pool.
+     *
+     * @param deals - the number of tables to deal.
+     * @param games - the number of games to play.
+     * @param seed  - the seed of the simulation (the same seed gives the same statistics).
+     * @return - the statistics.
+     */
+    public Stats analyze(long deals, long games, long seed) {
+        return ForkJoinPool.commonPool().invoke(new Simulation(deals, games, new SplittableRandom(seed)));
+    }
+
+    public static void main(String[] args) {
+        long deals = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 10_000;
+        String configFile = args.length > 2 ? args[2] : "config.properties";
+
+        Logger logger = Logger.getLogger("SetDealAnalyzer");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, configFile);
+        long seed = config.randomSeed != 0 ? config.randomSeed : new SplittableRandom().nextLong();
+        DealAnalyzer analyzer = new DealAnalyzer(config, new UtilImpl(config));
+
+        long start = System.nanoTime();
+        Stats stats = analyzer.analyze(deals, games, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d deals of %d cards and %d games of %d cards (feature size %d, feature count %d), seed %d%n",
+                stats.deals, config.tableSize, stats.games, config.deckSize, config.featureSize, config.featureCount, seed);
+        System.out.printf("simulated in %.2f seconds on %d threads%n", seconds, ForkJoinPool.commonPool().getParallelism());
+        if (stats.deals > 0) {
+            System.out.printf("tables with no set: %.4f%%%n", 100.0 * stats.setsPerTable[0] / stats.deals);
+            System.out.printf("sets per table: %.3f%n", (double) stats.sets / stats.deals);
+            int last = stats.setsPerTable.length - 1;
+            while (last > 0 && stats.setsPerTable[last] == 0) last--;
+            long[] distribution = Arrays.copyOf(stats.setsPerTable, last + 1);
+            System.out.println("tables per number of sets: " + Arrays.toString(distribution));
+        }
+        if (stats.games > 0) {
+            System.out.printf("reshuffles per game: %.3f (max %d, %.2f%% of the games reshuffle)%n",
+                    (double) stats.reshuffles / stats.games, stats.maxReshuffles, 100.0 * stats.gamesWithReshuffle / stats.games);
+            System.out.printf("sets per game: %.2f, cards left: %.2f%n",
+                    (double) stats.setsPerGame / stats.games, (double) stats.cardsLeft / stats.games);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 public class Env {
@@ -9,10 +10,20 @@ public class Env {
     public final UserInterface ui;
     public final Util util;
 
+    /**
+     * Creates the threads of the game entities (timer, players and computer players).
+     */
+    public final ThreadFactory threads;
+
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, config.virtualThreads ? VirtualThreads.factory(logger) : Thread::new);
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, ThreadFactory threads) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.threads = threads;
     }
 }
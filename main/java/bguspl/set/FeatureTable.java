@@ -0,0 +1,96 @@
+package bguspl.set;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A precomputed, read-only table of the features of every card in the deck.
+ * The table is built once for each card data configuration and shared across the JVM.
+ */
+public final class FeatureTable {
+
+    /**
+     * The tables built so far, by their featureSize and featureCount.
+     */
+    private static final Map<Long, FeatureTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * The number of features on the cards.
+     */
+    public final int featureCount;
+
+    /**
+     * The number of choices for each feature.
+     */
+    public final int featureSize;
+
+    /**
+     * The total number of cards in the deck.
+     */
+    public final int deckSize;
+
+    /**
+     * The features of all cards, flattened: the i-th feature of a card is at features[card * featureCount + i].
+     */
+    private final byte[] features;
+
+    private FeatureTable(int featureSize, int featureCount, int deckSize) {
+        if (featureSize > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("feature size " + featureSize + " is too large");
+        this.featureSize = featureSize;
+        this.featureCount = featureCount;
+        this.deckSize = deckSize;
+
+        features = new byte[deckSize * featureCount];
+        for (int card = 0; card < deckSize; ++card) {
+            int value = card;
+            for (int i = featureCount - 1; i >= 0; --i) {
+                features[card * featureCount + i] = (byte) (value % featureSize);
+                value /= featureSize;
+            }
+        }
+    }
+
+    /**
+     * Returns the feature table of the cards described by a configuration (building it on first use).
+     *
+     * @param config - the game configuration.
+     * @return - the shared feature table.
+     */
+    public static FeatureTable of(Config config) {
+        long key = ((long) config.featureSize << Integer.SIZE) | config.featureCount;
+        return tables.computeIfAbsent(key, k -> new FeatureTable(config.featureSize, config.featureCount, config.deckSize));
+    }
+
+    /**
+     * @param card    - the card id.
+     * @param feature - the feature index (between 0 and featureCount - 1).
+     * @return - the value of the feature of the card (between 0 and featureSize - 1).
+     */
+    public int feature(int card, int feature) {
+        return features[card * featureCount + feature];
+    }
+
+    /**
+     * Copies the features of a card into a buffer.
+     *
+     * @param card   - the card id.
+     * @param buffer - an array of at least featureCount values to write the features to.
+     */
+    public void copyFeatures(int card, int[] buffer) {
+        int offset = card * featureCount;
+        for (int i = 0; i < featureCount; ++i)
+            buffer[i] = features[offset + i];
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the features of the card as a string of digits (e.g. the name of the card's image).
+     */
+    public String toDigits(int card) {
+        StringBuilder digits = new StringBuilder(featureCount);
+        for (int i = 0; i < featureCount; ++i)
+            digits.append(Character.forDigit(feature(card, i), Character.MAX_RADIX));
+        return digits.toString();
+    }
+}
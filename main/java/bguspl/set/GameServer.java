@@ -0,0 +1,188 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent headless games in one JVM.
+ * Every game has its own environment, table, dealer and players (all of them computer players). The dealers run on a
+ * shared bounded pool, so at most maxConcurrentGames games are played at a time and the rest wait for a free worker.
+ * All the threads of the hosted games (dealers, players, computer players and timers) are virtual threads when the
+ * JVM supports them, whatever VirtualThreads is set to, so a single process can play many games at once. If the
+ * configuration sets RandomSeed, every game gets its own seed derived from it (the seed plus the game id).
+ */
+public class GameServer {
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+
+    /**
+     * Creates the threads of all the hosted games (virtual threads if supported).
+     */
+    private final ThreadFactory threads;
+
+    /**
+     * The workers running the dealers of the games.
+     */
+    private final ExecutorService games;
+
+    /**
+     * The id of the next game.
+     */
+    private final AtomicInteger nextGame = new AtomicInteger();
+
+    /**
+     * The results of a single game.
+     */
+    public static class GameResult {
+
+        public final int game;
+        public final long nanos;
+        public final int claims;
+        public final int sets;
+        public final int[] scores;
+
+        private GameResult(int game, long nanos, int claims, int sets, int[] scores) {
+            this.game = game;
+            this.nanos = nanos;
+            this.claims = claims;
+            this.sets = sets;
+            this.scores = scores;
+        }
+
+        public double claimsPerSecond() {
+            return nanos == 0 ? 0 : claims * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * @param logger             - the logger shared by all the games.
+     * @param config             - the configuration shared by all the games (human players are played by the computer).
+     * @param maxConcurrentGames - the maximal number of games played at the same time.
+     */
+    public GameServer(Logger logger, Config config, int maxConcurrentGames) {
+        this.logger = logger;
+        this.config = config;
+        util = new UtilImpl(config);
+        threads = VirtualThreads.supported() ? VirtualThreads.factory(logger) : Thread::new;
+        AtomicInteger workers = new AtomicInteger();
+        games = Executors.newFixedThreadPool(maxConcurrentGames, runnable -> {
+            Thread thread = threads.newThread(runnable);
+            thread.setName("game-worker-" + workers.incrementAndGet());
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a new game.
+     *
+     * @return - a future of the game's results.
+     */
+    public Future<GameResult> submitGame() {
+        int game = nextGame.incrementAndGet();
+        return games.submit(() -> play(game));
+    }
+
+    /**
+     * Plays a game on the current thread, creating its entities.
+     */
+    private GameResult play(int game) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory gameThreads = runnable -> {
+            Thread thread = threads.newThread(runnable);
+            thread.setName("game-" + game + "-" + threadCount.incrementAndGet());
+            return thread;
+        };
+        Env env = new Env(logger, config, new Simulator.HeadlessUserInterface(), util, gameThreads);
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = config.randomSeed != 0
+                ? new Dealer(env, table, players, config.randomSeed + game)
+                : new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        long start = System.nanoTime();
+        dealer.run();
+        long nanos = System.nanoTime() - start;
+
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].score();
+        return new GameResult(game, nanos, dealer.getClaimsVerified(), dealer.getSetsFound(), scores);
+    }
+
+    /**
+     * Plays a number of games (up to maxConcurrentGames at a time) and waits for all of them.
+     *
+     * @param count - the number of games.
+     * @return - the results of the games.
+     */
+    public List<GameResult> playGames(int count) throws InterruptedException {
+        List<Future<GameResult>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            futures.add(submitGame());
+        List<GameResult> results = new ArrayList<>(count);
+        for (Future<GameResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                logger.severe("game failed: " + e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Stops accepting games (the scheduled games are still played).
+     */
+    public void shutdown() {
+        games.shutdown();
+    }
+
+    /**
+     * Runs the server from the command line.
+     *
+     * @param args - the number of games, the maximal number of concurrent games (all of them by default) and the
+     *             configuration file name.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, count);
+        String configFile = args.length > 2 ? args[2] : "config.properties";
+
+        Logger logger = Logger.getLogger("SetGameServer");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, configFile);
+
+        GameServer server = new GameServer(logger, config, concurrency);
+        long start = System.nanoTime();
+        List<GameResult> results = server.playGames(count);
+        long nanos = System.nanoTime() - start;
+        server.shutdown();
+
+        long claims = 0, sets = 0;
+        for (GameResult result : results) {
+            claims += result.claims;
+            sets += result.sets;
+            System.out.printf("game %d: %d sets, %d claims in %.2f seconds (%.1f claims/s)%n",
+                    result.game, result.sets, result.claims, result.nanos / 1e9, result.claimsPerSecond());
+        }
+        double seconds = nanos / 1e9;
+        System.out.printf("%d games (%d at a time) in %.2f seconds: %.2f games/s, %.1f claims/s, %.1f sets/s%n",
+                results.size(), concurrency, seconds, results.size() / seconds, claims / seconds, sets / seconds);
+    }
+}
@@ -1,11 +1,13 @@
 package bguspl.set;
 
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameLog;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -65,6 +67,13 @@ public class Main {
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
+        GameLog gameLog = null;
+        if (!config.gameLogFile.isEmpty()) {
+            gameLog = new GameLog(dealer.getSeed());
+            dealer.setGameLog(gameLog);
+        }
+        logger.info("random seed: " + dealer.getSeed());
+
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
         dealerThread.startWithLog();
@@ -72,6 +81,7 @@ public class Main {
         try {
             // shutdown stuff
             dealerThread.joinWithLog();
+            if (gameLog != null) saveGameLog(gameLog, config.gameLogFile, logger);
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
@@ -83,6 +93,15 @@ public class Main {
         }
     }
 
+    private static void saveGameLog(GameLog gameLog, String file, Logger logger) {
+        try {
+            gameLog.save(Paths.get(file));
+            logger.info("game log saved to " + file);
+        } catch (IOException e) {
+            logger.severe("cannot save the game log to " + file + ": " + e);
+        }
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
@@ -0,0 +1,47 @@
+package bguspl.set;
+
+import bguspl.set.ex.GameLog;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Replays a game recorded with GameLogFile, headless and single threaded, and checks that the game engine still
+ * plays it the same way: the same deals, the same cards in every claim and the same verdicts. Running it with the
+ * log of a long game is a deterministic workload for comparing builds.
+ * <p>
+ * Usage: java bguspl.set.Replay [game log file] [configuration file name]
+ * The configuration should be the one the game was played with (at least the deck, table and player sizes).
+ */
+public class Replay {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java bguspl.set.Replay <game log file> [configuration file name]");
+            return;
+        }
+        String configFile = args.length > 1 ? args[1] : "config.properties";
+
+        Logger logger = Logger.getLogger("SetReplay");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, Simulator.headless(Config.loadProperties(configFile, logger)));
+        Env env = new Env(logger, config, new Simulator.HeadlessUserInterface(), new UtilImpl(config));
+        GameLog log = GameLog.load(Paths.get(args[0]));
+
+        long start = System.nanoTime();
+        int[] scores;
+        try {
+            scores = log.replay(env);
+        } catch (IllegalStateException e) {
+            System.out.println("the replay diverged from the log: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("replayed %d events of seed %d in %.1f ms%n", log.size(), log.getSeed(), millis);
+        System.out.println("scores: " + Arrays.toString(scores));
+    }
+}
@@ -0,0 +1,167 @@
+package bguspl.set;
+
+import bguspl.set.ex.Claim;
+import bguspl.set.ex.ClaimListener;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.logging.Logger;
+
+/**
+ * Runs headless games of computer players back-to-back, as fast as the CPU allows, and reports the throughput of
+ * the game engine. The games are played by the real dealer, table and players, with no user interface, no table
+ * delay, no freezes and no turn timeout (the table is reshuffled only when there is no legal set on it).
+ * <p>
+ * Usage: java bguspl.set.Simulator [number of games] [configuration file name]
+ * All the players of the configuration (human and computer) are played by the computer. If the configuration sets
+ * RandomSeed, the games are dealt from seeds derived from it, so runs of different builds deal the same games.
+ */
+public class Simulator {
+
+    /**
+     * The claim latencies (from the claim to its verification) of all the games, in nanoseconds.
+     */
+    private long[] latencies = new long[1024];
+    private int latencyCount;
+
+    private long claims;
+    private long validClaims;
+
+    private final ClaimListener listener = this::record;
+
+    /**
+     * Records a verified claim. Called on the dealer thread (one game at a time).
+     */
+    private void record(Claim claim, boolean valid) {
+        if (latencyCount == latencies.length)
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        latencies[latencyCount++] = System.nanoTime() - claim.timestamp;
+        ++claims;
+        if (valid) ++validClaims;
+    }
+
+    /**
+     * @param properties - the configuration properties.
+     * @return - the properties of a max speed headless game.
+     */
+    static Properties headless(Properties properties) {
+        Properties simulation = new Properties();
+        simulation.putAll(properties);
+        int players = Integer.parseInt(properties.getProperty("HumanPlayers", "2"))
+                + Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
+        simulation.setProperty("HumanPlayers", "0");
+        simulation.setProperty("ComputerPlayers", Integer.toString(players));
+        simulation.setProperty("LogLevel", "OFF");
+        simulation.setProperty("Hints", "False");
+        simulation.setProperty("TableDelaySeconds", "0");
+        simulation.setProperty("PointFreezeSeconds", "0");
+        simulation.setProperty("PenaltyFreezeSeconds", "0");
+        simulation.setProperty("TurnTimeoutSeconds", "0");
+        simulation.setProperty("EndGamePauseSeconds", "0");
+        simulation.setProperty("AiPressesPerSecond", "0");
+        return simulation;
+    }
+
+    /**
+     * Plays a single game on the current thread.
+     */
+    private void play(Logger logger, Config config, Util util, long seed) {
+        Env env = new Env(logger, config, new HeadlessUserInterface(), util);
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players, seed);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        dealer.setClaimListener(listener);
+        dealer.run();
+    }
+
+    /**
+     * @return - the p-th percentile of the recorded latencies, in microseconds.
+     */
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e3;
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        String configFile = args.length > 1 ? args[1] : "config.properties";
+
+        Logger logger = Logger.getLogger("SetSimulator");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, headless(Config.loadProperties(configFile, logger)));
+        Util util = new UtilImpl(config);
+        Simulator simulator = new Simulator();
+        SplittableRandom seeds = config.randomSeed != 0 ? new SplittableRandom(config.randomSeed) : new SplittableRandom();
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // the game threads log their start and end
+        long start = System.nanoTime();
+        try {
+            for (int game = 0; game < games; game++)
+                simulator.play(logger, config, util, seeds.nextLong());
+        } finally {
+            System.setOut(console);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] sorted = Arrays.copyOf(simulator.latencies, simulator.latencyCount);
+        Arrays.sort(sorted);
+        System.out.printf("%d games of %d players in %.2f seconds%n", games, config.players, seconds);
+        System.out.printf("games/s: %.2f%n", games / seconds);
+        System.out.printf("claims/s: %.1f%n", simulator.claims / seconds);
+        System.out.printf("valid sets: %d of %d claims (%.1f%%)%n", simulator.validClaims, simulator.claims,
+                simulator.claims == 0 ? 0 : 100.0 * simulator.validClaims / simulator.claims);
+        System.out.printf("claim latency: p50 %.1f us, p99 %.1f us%n", percentile(sorted, 0.5), percentile(sorted, 0.99));
+    }
+
+    /**
+     * A user interface that shows nothing (so the simulation measures the game, not the logging of the ui calls).
+     */
+    static class HeadlessUserInterface implements UserInterface {
+
+        @Override
+        public void placeCard(int card, int slot) {}
+
+        @Override
+        public void removeCard(int slot) {}
+
+        @Override
+        public void placeToken(int player, int slot) {}
+
+        @Override
+        public void removeTokens() {}
+
+        @Override
+        public void removeTokens(int slot) {}
+
+        @Override
+        public void removeToken(int player, int slot) {}
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {}
+
+        @Override
+        public void setElapsed(long millies) {}
+
+        @Override
+        public void setFreeze(int player, long millies) {}
+
+        @Override
+        public void setScore(int player, int score) {}
+
+        @Override
+        public void announceWinner(int[] players) {}
+
+        @Override
+        public void dispose() {}
+    }
+}
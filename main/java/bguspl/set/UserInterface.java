@@ -18,6 +18,27 @@ public interface UserInterface {
      */
     void removeCard(int slot);
 
+    /**
+     * Draw several cards at once, as a single update of the view.
+     * @param cards - the card ids.
+     * @param slots - the slot of each card.
+     */
+    default void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < cards.length; i++)
+            placeCard(cards[i], slots[i]);
+    }
+
+    /**
+     * Draw empty card images and remove all player names text in several slots at once, as a single update of the view.
+     * @param slots - the slot numbers.
+     */
+    default void removeCards(int[] slots) {
+        for (int slot : slots) {
+            removeTokens(slot);
+            removeCard(slot);
+        }
+    }
+
     /**
      * Draw a player name text in the specified slot.
      * @param player - the card id.
@@ -33,6 +33,20 @@ public class UserInterfaceDecorator implements UserInterface {
         if (ui != null) ui.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        logger.severe("placing cards " + Arrays.toString(cards) + " in slots " + Arrays.toString(slots));
+        util.spin();
+        if (ui != null) ui.placeCards(cards, slots);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        logger.severe("removing cards and tokens from slots " + Arrays.toString(slots));
+        util.spin();
+        if (ui != null) ui.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
         logger.severe("player " + (player + 1) + " placing token on slot " + slot);
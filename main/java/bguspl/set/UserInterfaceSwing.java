@@ -24,10 +24,6 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final WinnerPanel winnerPanel;
     private final Config config;
 
-    static String intInBaseToPaddedString(int n, int padding, int base) {
-        return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
-    }
-
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
 
         this.config = config;
@@ -122,10 +118,11 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             // init deck and load all pictures from png files
             assert config.featureSize < 10; // otherwise there will be naming conflicts
 
-            // load the image resources
+            // load the image resources (each image is named after the features of its card)
+            FeatureTable features = FeatureTable.of(config);
             deck = new Image[config.deckSize];
             for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
+                deck[i] = loadImageResource("cards/" + features.toDigits(i) + ".png");
             emptyCard = loadImageResource("cards/empty_card.png");
 
             grid = new Image[config.rows][config.columns];
@@ -164,6 +161,22 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             repaint();
         }
 
+        private void placeCards(int[] slots, int[] cards) {
+            for (int i = 0; i < slots.length; i++)
+                grid[slots[i] / config.columns][slots[i] % config.columns] = deck[cards[i]];
+            validate();
+            repaint();
+        }
+
+        private void removeCards(int[] slots) {
+            for (int slot : slots) {
+                removeTokens(slot);
+                grid[slot / config.columns][slot % config.columns] = emptyCard;
+            }
+            validate();
+            repaint();
+        }
+
         private void placeToken(int player, int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
@@ -284,6 +297,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         gamePanel.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        gamePanel.placeCards(slots, cards);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        gamePanel.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
         gamePanel.placeToken(player, slot);
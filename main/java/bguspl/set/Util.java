@@ -1,6 +1,7 @@
 package bguspl.set;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -15,6 +16,14 @@ public interface Util {
      */
     int[] cardToFeatures(int card);
 
+    /**
+     * Writes the features of a card id into a buffer (see cardToFeatures method), without allocating.
+     *
+     * @param card     - the card id.
+     * @param features - an array of at least config.featureCount values to write the features to.
+     */
+    void cardToFeatures(int card, int[] features);
+
     /**
      * Converts an array of card ids to an array of features (see cardToFeatures method).
      *
@@ -23,6 +32,14 @@ public interface Util {
      */
     int[][] cardsToFeatures(int[] cards);
 
+    /**
+     * Writes the features of an array of card ids into a buffer (see cardToFeatures method), without allocating.
+     *
+     * @param cards    - an array of card ids.
+     * @param features - a 2d array of at least cards.length rows of config.featureCount values to write to.
+     */
+    void cardsToFeatures(int[] cards, int[][] features);
+
     /**
      * Checks if an array of cards forms a legal set.
      *
@@ -31,6 +48,24 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks if three cards form a legal set (same as testSet(new int[]{a, b, c}), without allocating).
+     *
+     * @param a - the first card.
+     * @param b - the second card.
+     * @param c - the third card.
+     * @return - true iff the three cards form a legal set.
+     */
+    boolean testSet(int a, int b, int c);
+
+    /**
+     * Finds the card that completes the given cards to a legal set.
+     *
+     * @param cards - an array of config.featureSize - 1 card ids.
+     * @return - the id of the unique card completing the cards to a legal set, or -1 if there is no such card.
+     */
+    int completeSet(int[] cards);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +75,16 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Lazily finds the sets in the given collection of cards, in the same order as findSets. Sets are searched only as
+     * the stream is consumed, so short-circuiting operations stop the search, and the stream can be split for parallel
+     * consumption.
+     *
+     * @param deck - a collection of cards (may not include null objects, and should not change while streamed).
+     * @return - a stream of integer arrays, each one contains the card ids of a legal set.
+     */
+    Stream<int[]> streamSets(List<Integer> deck);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
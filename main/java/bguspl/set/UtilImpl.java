@@ -3,8 +3,13 @@ package bguspl.set;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
@@ -13,15 +18,37 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The precomputed features of every card.
+     */
+    private final FeatureTable features;
+
+    /**
+     * The packed representation of every card: feature i of the card occupies bits [i * featureSize, (i + 1) *
+     * featureSize) and holds a single set bit at the position of its value (null if the features do not fit a long).
+     */
+    private final long[] packedCards;
+
+    /**
+     * A mask of the bits of a single feature in a packed card.
+     */
+    private final long featureMask;
+
     public UtilImpl(Config config) {
         this.config = config;
+        features = FeatureTable.of(config);
+        featureMask = (1L << config.featureSize) - 1;
+        if (config.featureSize * config.featureCount <= Long.SIZE) {
+            packedCards = new long[config.deckSize];
+            for (int card = 0; card < config.deckSize; ++card)
+                for (int i = 0; i < config.featureCount; ++i)
+                    packedCards[card] |= 1L << (i * config.featureSize + features.feature(card, i));
+        } else packedCards = null;
     }
 
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
-        }
+    @Override
+    public void cardToFeatures(int card, int[] features) {
+        this.features.copyFeatures(card, features);
     }
 
     @Override
@@ -31,30 +58,72 @@ public class UtilImpl implements Util {
         return features;
     }
 
+    @Override
+    public void cardsToFeatures(int[] cards, int[][] features) {
+        for (int i = 0; i < cards.length; ++i)
+            cardToFeatures(cards[i], features[i]);
+    }
+
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        cardsToFeatures(cards, features);
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        if (packedCards == null) return testSetByFeatures(cards);
+        if (cards.length < 2) return false; // a feature of a single card is both sameSame and butDifferent
+        if (cards.length == 3) return testSet(cards[0], cards[1], cards[2]);
+
+        // per feature: or = the values seen, and = the values all cards share, repeated = the values seen twice
+        long or = 0, and = -1, repeated = 0;
+        for (int card : cards) {
+            long packed = packedCards[card];
+            repeated |= or & packed;
+            or |= packed;
+            and &= packed;
+        }
+        long notSame = or ^ and, notDifferent = repeated;
+        for (int i = 0; i < config.featureCount; ++i) {
+            long mask = featureMask << (i * config.featureSize);
+            if ((notSame & mask) != 0 && (notDifferent & mask) != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean testSet(int a, int b, int c) {
+        if (packedCards == null) return testSetByFeatures(new int[]{a, b, c});
+
+        // every feature is sameSame (all pairs share the bit) or butDifferent (no pair shares a bit), so the three
+        // pairwise intersections are equal; if exactly two cards agree on a feature only one intersection has a bit
+        long ab = packedCards[a] & packedCards[b];
+        long bc = packedCards[b] & packedCards[c];
+        long ac = packedCards[a] & packedCards[c];
+        return ab == bc && bc == ac;
+    }
+
+    /**
+     * Checks if an array of cards forms a legal set by comparing their features one by one (used when the packed
+     * representation of the cards does not fit a long).
+     */
+    private boolean testSetByFeatures(int[] cards) {
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                if (features.feature(cards[0], i) != features.feature(cards[j], i)) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (features.feature(cards[j - 1], i) == features.feature(cards[k], i)) {
                         butDifferent = false;
                         break;
                     }
@@ -64,8 +133,216 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    @Override
+    public int completeSet(int[] cards) {
+        if (cards.length < 2 || cards.length != config.featureSize - 1) return -1; // no unique completion
+        if (packedCards == null) {
+            int[] combination = IntStream.range(0, cards.length).toArray();
+            return completeSet(cards, combination);
+        }
+
+        // per feature: or = the values seen, and = the values all cards share, repeated = the values seen twice
+        long or = 0, and = -1, repeated = 0;
+        for (int card : cards) {
+            long packed = packedCards[card];
+            repeated |= or & packed;
+            or |= packed;
+            and &= packed;
+        }
+        int card = 0;
+        for (int i = 0; i < config.featureCount; ++i) {
+            int shift = i * config.featureSize;
+            long value;
+            if (((and >>> shift) & featureMask) != 0) value = (and >>> shift) & featureMask; // sameSame
+            else if (((repeated >>> shift) & featureMask) == 0) value = ~(or >>> shift) & featureMask; // butDifferent
+            else return -1;
+            card = card * config.featureSize + Long.numberOfTrailingZeros(value);
+        }
+        return card;
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (config.featureSize < 3) return findSetsByCombinations(deck, count); // a single card does not determine its partner
+
+        Search search = new Search(deck, count);
+        boolean parallel = config.parallelFindSetsThreshold > 0 && deck.size() >= config.parallelFindSetsThreshold;
+        LinkedList<int[]> sets = StreamSupport.stream(new SetSpliterator(search, 0, deck.size()), parallel)
+                .collect(Collectors.toCollection(LinkedList::new));
+        while (sets.size() > search.count) sets.removeLast(); // every split may find up to count sets of its own
+        return sets;
+    }
+
+    @Override
+    public Stream<int[]> streamSets(List<Integer> deck) {
+        if (config.featureSize < 3) return findSetsByCombinations(deck, Integer.MAX_VALUE).stream();
+        return StreamSupport.stream(new SetSpliterator(new Search(deck, Integer.MAX_VALUE), 0, deck.size()), false);
+    }
+
+    /**
+     * The state of a single search, shared by all the spliterators splitting it.
+     */
+    private class Search {
+
+        private final int count;
+
+        /**
+         * The card in each index of the deck.
+         */
+        private final int[] cards;
+
+        /**
+         * Mapping between a card and its index in the deck (-1 if it is not in the deck).
+         */
+        private final int[] position;
+
+        private Search(List<Integer> deck, int count) {
+            this.count = Math.max(count, 1); // at least one set is always looked for
+            position = new int[config.deckSize];
+            Arrays.fill(position, -1);
+            cards = new int[deck.size()];
+            for (int i = 0; i < deck.size(); ++i) {
+                cards[i] = deck.get(i);
+                position[cards[i]] = i;
+            }
+        }
+    }
+
+    /**
+     * Lazily yields, in lexicographic order, the sets whose first card (by deck index) is at an index in [first, to).
+     * Splits by halving the range of first cards. A split stops once count sets precede its position (the sets it found
+     * and the sets found before it was split off), as no later set can be among the first count sets of the search.
+     * Splits never stop each other, so a parallel search finds the same first count sets as a sequential one.
+     */
+    private class SetSpliterator implements Spliterator<int[]> {
+
+        private final Search search;
+        private int first;
+        private int to;
+
+        /**
+         * The indices of the featureSize - 1 cards to complete next (valid only while started).
+         */
+        private final int[] combination;
+        private boolean started;
+
+        /**
+         * The number of sets found by this spliterator, including before it was split.
+         */
+        private int found;
+
+        private SetSpliterator(Search search, int first, int to) {
+            this.search = search;
+            this.first = first;
+            this.to = to;
+            combination = new int[config.featureSize - 1];
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            int n = search.cards.length;
+            int m = combination.length;
+
+            while (first < to && found < search.count) {
+                if (!started) {
+                    for (int i = 0; i < m; ++i)
+                        combination[i] = first + i;
+                    started = true;
+                }
+
+                // walk the (m - 1)-combinations following the first card and complete each one to a set
+                while (combination[m - 1] < n) {
+                    int completion = completeSet(search.cards, combination);
+                    // only accept completions that come after the combination, so every set is reported once and in order
+                    int[] set = null;
+                    if (completion >= 0 && search.position[completion] > combination[m - 1]) {
+                        set = new int[m + 1];
+                        for (int i = 0; i < m; ++i)
+                            set[i] = search.cards[combination[i]];
+                        set[m] = completion;
+                        Arrays.sort(set);
+                    }
+
+                    // generate next combination in lexicographic order (keeping the first card)
+                    int t = m - 1;
+                    while (t != 0 && combination[t] == n - m + t) --t;
+                    if (t == 0) combination[m - 1] = n;
+                    else {
+                        combination[t]++;
+                        for (int i = t + 1; i < m; i++) combination[i] = combination[i - 1] + 1;
+                    }
+
+                    if (set != null) {
+                        found++;
+                        action.accept(set);
+                        return true;
+                    }
+                }
+                ++first;
+                started = false;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            if (to - first < 2) return null;
+
+            // hand over the prefix (including the first card being walked), keep the suffix
+            int middle = (first + to) >>> 1;
+            SetSpliterator prefix = new SetSpliterator(search, first, middle);
+            System.arraycopy(combination, 0, prefix.combination, 0, combination.length);
+            prefix.started = started;
+            prefix.found = found;
+            first = middle;
+            started = false;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - first; // the number of first cards left, as the sets per first card are not known in advance
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Computes the unique card that completes the given cards to a legal set, feature by feature.
+     *
+     * @param cards       - the candidate cards.
+     * @param combination - the indices (in cards) of the featureSize - 1 cards to complete.
+     * @return - the id of the completing card, or -1 if no card completes them to a set.
+     */
+    private int completeSet(int[] cards, int[] combination) {
+        int card = 0;
+        for (int f = 0; f < config.featureCount; ++f) {
+            int first = features.feature(cards[combination[0]], f);
+            int seen = 0, sum = 0;
+            for (int index : combination) {
+                int value = features.feature(cards[index], f);
+                seen |= 1 << value;
+                sum += value;
+            }
+
+            int value;
+            if (seen == 1 << first) value = first; // sameSame: the last card must match
+            else if (Integer.bitCount(seen) == combination.length) // butDifferent: the last card gets the missing value
+                value = config.featureSize * (config.featureSize - 1) / 2 - sum;
+            else return -1;
+
+            card = card * config.featureSize + value;
+        }
+        return card;
+    }
+
+    /**
+     * Brute-force search over all the featureSize-combinations of the deck (used when the completion is ambiguous).
+     */
+    private List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
@@ -0,0 +1,46 @@
+package bguspl.set;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Creates virtual threads when the running JVM supports them (Java 21 and later).
+ * The API is looked up reflectively, so the game still compiles and runs on older JVMs with platform threads.
+ */
+public final class VirtualThreads {
+
+    /**
+     * The factory of virtual threads (null if they are not supported).
+     */
+    private static final ThreadFactory factory = lookup();
+
+    private VirtualThreads() {}
+
+    private static ThreadFactory lookup() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return - true iff the JVM supports virtual threads.
+     */
+    public static boolean supported() {
+        return factory != null;
+    }
+
+    /**
+     * Returns a factory of virtual threads, or of platform threads if virtual threads are not supported.
+     *
+     * @param logger - the logger to report a fallback to platform threads with.
+     * @return - the thread factory.
+     */
+    public static ThreadFactory factory(Logger logger) {
+        if (factory != null) return factory;
+        logger.severe("virtual threads are not supported by Java " + System.getProperty("java.version") + ", using platform threads");
+        return Thread::new;
+    }
+}
@@ -0,0 +1,120 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the key presses of all the paced computer players from a single thread, each player at its configured
+ * number of presses per second. The thread parks until the next due press, so an idle game costs no CPU, and the
+ * input rate does not depend on how fast the player threads are.
+ * A press that comes due while its player is not ready for it (frozen, waiting for a verdict or with a full queue)
+ * is skipped, so the rate is the maximal input rate of the player.
+ */
+public class AiScheduler implements Runnable {
+
+    private final Env env;
+
+    /**
+     * The paced players, by the time of their next press.
+     */
+    private final PriorityQueue<Pace> paces = new PriorityQueue<>();
+
+    /**
+     * The source of randomness of the scheduler's thread (shared by the players it drives).
+     */
+    private final SplittableRandom random;
+
+    private volatile boolean terminate;
+
+    private volatile Thread schedulerThread;
+
+    /**
+     * The pace of a player.
+     */
+    private static final class Pace implements Comparable<Pace> {
+
+        private final Player player;
+
+        /**
+         * The nanoseconds between key presses.
+         */
+        private final long period;
+
+        /**
+         * The time (System.nanoTime) of the next key press.
+         */
+        private long due;
+
+        private Pace(Player player, long period, long due) {
+            this.player = player;
+            this.period = period;
+            this.due = due;
+        }
+
+        @Override
+        public int compareTo(Pace other) {
+            return Long.compare(due, other.due);
+        }
+    }
+
+    /**
+     * @param env    - the game environment.
+     * @param random - the source of randomness of the scheduler's thread.
+     */
+    public AiScheduler(Env env, SplittableRandom random) {
+        this.env = env;
+        this.random = random;
+    }
+
+    /**
+     * Adds a paced player. Called before the scheduler is started.
+     *
+     * @param player - the player.
+     */
+    public void add(Player player) {
+        long period = (long) (TimeUnit.SECONDS.toNanos(1) / env.config.aiPressesPerSecond[player.id]);
+        // spread the first presses over a period, so the players do not press in bursts
+        paces.add(new Pace(player, period, System.nanoTime() + random.nextLong(Math.max(1, period))));
+    }
+
+    public boolean isEmpty() {
+        return paces.isEmpty();
+    }
+
+    @Override
+    public void run() {
+        System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
+        schedulerThread = Thread.currentThread();
+        while (!terminate && !paces.isEmpty()) {
+            Pace next = paces.peek();
+            long delay = next.due - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(this, delay);
+                continue;
+            }
+            paces.poll();
+            long thinking = next.player.aiPress(random);
+            long now = System.nanoTime();
+            next.due += next.period + thinking;
+            if (next.due < now - next.period) // fell behind (e.g. a long garbage collection): skip the missed presses
+                next.due = now;
+            paces.add(next);
+        }
+        System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
+    }
+
+    public void terminate() {
+        terminate = true;
+        Thread thread = schedulerThread;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    public Thread getSchedulerThread() {
+        return schedulerThread;
+    }
+}
@@ -0,0 +1,154 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Decides the key presses of a computer player.
+ */
+public interface AiStrategy {
+
+    /**
+     * Chooses the next slot to press.
+     *
+     * @param table  - a snapshot of the table.
+     * @param tokens - the slots of the player's tokens (after all of its earlier presses, unless the strategy is blind).
+     * @param random - the source of randomness of the player.
+     * @return - the slot to press (-1 if there is nothing to press for now).
+     */
+    int nextPress(TableSnapshot table, int[] tokens, SplittableRandom random);
+
+    /**
+     * @param random - the source of randomness of the player.
+     * @return - the nanoseconds to think before pressing the chosen slot.
+     */
+    default long thinkingNanos(SplittableRandom random) {
+        return 0;
+    }
+
+    /**
+     * @return - true iff the strategy ignores the player's tokens, so it may press ahead of the player thread
+     *           (otherwise it is asked only after the player thread handled all the earlier presses).
+     */
+    default boolean blind() {
+        return false;
+    }
+
+    /**
+     * Creates a strategy by its name in the configuration.
+     *
+     * @param name   - random, oracle or skilled.
+     * @param config - the game configuration.
+     * @param logger - the logger to report an unknown name with.
+     * @return - the strategy (the random one for an unknown name).
+     */
+    static AiStrategy of(String name, Config config, Logger logger) {
+        switch (name.toLowerCase()) {
+            case "random":
+                return new RandomStrategy();
+            case "oracle":
+                return new OracleStrategy();
+            case "skilled":
+                return new SkilledStrategy(config.aiSkill, config.aiLatencyMillis);
+            default:
+                logger.severe("unknown ai strategy " + name + ", using random");
+                return new RandomStrategy();
+        }
+    }
+
+    /**
+     * Presses random slots with cards (the classic "very very smart AI").
+     */
+    final class RandomStrategy implements AiStrategy {
+
+        @Override
+        public int nextPress(TableSnapshot table, int[] tokens, SplittableRandom random) {
+            int cards = 0;
+            for (int slot = 0; slot < table.slots(); slot++)
+                if (table.card(slot) != -1)
+                    ++cards;
+            if (cards == 0) return -1;
+            int chosen = random.nextInt(cards);
+            for (int slot = 0; ; slot++)
+                if (table.card(slot) != -1 && chosen-- == 0)
+                    return slot;
+        }
+
+        @Override
+        public boolean blind() {
+            return true;
+        }
+    }
+
+    /**
+     * Goes for a legal set on the table: first removes its tokens that are not in the set, then places tokens on the
+     * rest of the set. Prefers the set sharing the most slots with its tokens.
+     */
+    final class OracleStrategy implements AiStrategy {
+
+        @Override
+        public int nextPress(TableSnapshot table, int[] tokens, SplittableRandom random) {
+            int[] target = null;
+            int bestShared = -1, ties = 0;
+            for (int[] set : table.sets) {
+                int shared = 0;
+                for (int slot : set)
+                    if (contains(tokens, slot))
+                        ++shared;
+                if (shared > bestShared) {
+                    target = set;
+                    bestShared = shared;
+                    ties = 1;
+                } else if (shared == bestShared && random.nextInt(++ties) == 0) { // uniform among the best sets
+                    target = set;
+                }
+            }
+            if (target == null) return -1;
+
+            for (int token : tokens)
+                if (!contains(target, token))
+                    return token;
+            for (int slot : target)
+                if (!contains(tokens, slot))
+                    return slot;
+            return -1; // the set is already claimed
+        }
+
+        private static boolean contains(int[] slots, int slot) {
+            for (int s : slots)
+                if (s == slot)
+                    return true;
+            return false;
+        }
+    }
+
+    /**
+     * Goes for a set with a given probability in each key press (otherwise presses a random slot), and thinks for a
+     * random time (uniform between 0 and twice the given latency) before each key press.
+     */
+    final class SkilledStrategy implements AiStrategy {
+
+        private final AiStrategy oracle = new OracleStrategy();
+        private final AiStrategy random = new RandomStrategy();
+        private final double skill;
+        private final long latencyNanos;
+
+        public SkilledStrategy(double skill, long latencyMillis) {
+            this.skill = skill;
+            latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        }
+
+        @Override
+        public int nextPress(TableSnapshot table, int[] tokens, SplittableRandom random) {
+            return (random.nextDouble() < skill ? oracle : this.random).nextPress(table, tokens, random);
+        }
+
+        @Override
+        public long thinkingNanos(SplittableRandom random) {
+            return latencyNanos <= 0 ? 0 : (long) (random.nextDouble() * 2 * latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package bguspl.set.ex;
+
+/**
+ * An immutable record of a set claimed by a player: the slots of the player's tokens and the cards that were in them
+ * when the claim was made.
+ */
+public final class Claim {
+
+    /**
+     * The id of the claiming player.
+     */
+    public final int player;
+
+    /**
+     * The time (System.nanoTime) when the claim was made.
+     */
+    public final long timestamp;
+
+    private final int[] slots;
+
+    private final int[] cards;
+
+    /**
+     * @param player - the id of the claiming player.
+     * @param slots  - the slots of the player's tokens (copied).
+     * @param cards  - the cards in the slots, respectively (-1 for an empty slot; copied).
+     */
+    public Claim(int player, int[] slots, int[] cards) {
+        this.player = player;
+        this.slots = slots.clone();
+        this.cards = cards.clone();
+        timestamp = System.nanoTime();
+    }
+
+    /**
+     * @return - the number of claimed slots.
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * @param i - the index of the claimed slot (between 0 and size() - 1).
+     * @return - the slot.
+     */
+    public int slot(int i) {
+        return slots[i];
+    }
+
+    /**
+     * @param i - the index of the claimed slot (between 0 and size() - 1).
+     * @return - the card that was in the slot when the claim was made (-1 if none).
+     */
+    public int card(int i) {
+        return cards[i];
+    }
+}
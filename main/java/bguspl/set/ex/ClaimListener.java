@@ -0,0 +1,16 @@
+package bguspl.set.ex;
+
+/**
+ * Receives the claims verified by the dealer (e.g. for statistics or a claim log).
+ */
+public interface ClaimListener {
+
+    /**
+     * Called on the dealer thread when a claim was verified (claims that no longer refer to the table are dropped
+     * without verification).
+     *
+     * @param claim - the claim.
+     * @param valid - true iff the claimed cards are a legal set.
+     */
+    void claimVerified(Claim claim, boolean valid);
+}
@@ -3,8 +3,9 @@ package bguspl.set.ex;
 import bguspl.set.Env;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class manages the dealer's threads and data
@@ -23,9 +24,14 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final IntDeck deck;
+
+    /**
+     * The index of the legal sets among the cards in the deck and on the table.
+     */
+    private final LiveSets liveSets;
 
     /**
      * True iff game should be terminated due to an external event.
@@ -37,13 +43,22 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime;
 
-    private Thread dealerThread;
+    /**
+     * The dealer thread (parked while waiting for claims, unparked to wake it up).
+     */
+    private volatile Thread dealerThread;
 
     private TimerDealer td;
 
-    private volatile Queue<Player> playersQueue;
+    /**
+     * The claims published by the players, waiting to be verified (lock-free, many players and a single dealer).
+     */
+    private final Queue<Claim> claims;
 
-    private volatile boolean isSleeping;
+    /**
+     * The claims drained from the queue and being verified (used by the dealer thread only).
+     */
+    private final List<Claim> batch;
 
     private static final int three = 3;
 
@@ -51,15 +66,56 @@ public class Dealer implements Runnable {
 
     private long elapsedTime;
 
+    /**
+     * Generates the key presses of the paced computer players.
+     */
+    private final AiScheduler aiScheduler;
+
+    /**
+     * Notified of every verified claim (null if none).
+     */
+    private volatile ClaimListener claimListener;
+
+    /**
+     * The seed of the game's randomness, and the game's single source of randomness (the dealer's draws and the
+     * computer players' sources, which are split from it).
+     */
+    private final long seed;
+    private final SplittableRandom random;
+
+    /**
+     * Records the claims and the table changes of the game, for a replay (null if not recorded).
+     */
+    private volatile GameLog gameLog;
+
+    /**
+     * The number of claims verified so far, and how many of them were legal sets.
+     */
+    private volatile int claimsVerified;
+    private volatile int setsFound;
+
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, env.config.randomSeed != 0 ? env.config.randomSeed : new SplittableRandom().nextLong());
+    }
+
+    /**
+     * @param seed - the seed of the game's randomness (the same seed and inputs play the same game).
+     */
+    public Dealer(Env env, Table table, Player[] players, long seed) {
         this.env = env;
+        this.seed = seed;
+        random = new SplittableRandom(seed);
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = IntDeck.full(env.config.deckSize);
+        liveSets = new LiveSets(env);
+        for (int i = 0; i < deck.size(); i++)
+            liveSets.addToDeck(deck.get(i));
         reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
         td = new TimerDealer(env, this);
-        playersQueue = new LinkedList<>();
-        isSleeping = false;
+        aiScheduler = new AiScheduler(env, random.split());
+        claims = new ConcurrentLinkedQueue<>();
+        batch = new ArrayList<>();
         elapsedTime = System.currentTimeMillis();
     }
 
@@ -69,27 +125,31 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
+        dealerThread = Thread.currentThread();
         boolean started = false;
         while (!shouldFinish()) {
             if(!started) {
                 placeCardsOnTable();
                 elapsedTime = System.currentTimeMillis();
-                dealerThread = Thread.currentThread();
                 td.setJoinMe(players[zero]);
-                new Thread(td).start();
+                env.threads.newThread(td).start();
                 started = true;
                 for (int i = 0; i < players.length; i++) {
-                    new Thread(players[i]).start();
+                    env.threads.newThread(players[i]).start();
 //                    try{
 //                        Thread.sleep(50);
 //                    }catch (InterruptedException ignored){}
 //                    System.out.println("startd "+players[i].playerThread.getName()+" for player "+players[i].id);
                     if(i < players.length -1)
                         players[i].setJoinMe(players[i+1]);
+                    if (players[i].isPaced())
+                        aiScheduler.add(players[i]);
                 }
+                if (!aiScheduler.isEmpty())
+                    env.threads.newThread(aiScheduler).start();
             }
             timerLoop();
-            removeAllCardsFromTable();
+            reshuffle();
         }
         if(!terminate) {
             announceWinners();
@@ -103,7 +163,7 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!shouldFinish() && !turnTimedOut()) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
             removeCardsFromTable();
@@ -116,18 +176,21 @@ public class Dealer implements Runnable {
     public synchronized void terminate() {
         // TODO implement
         terminate = true;
-        for(int i = players.length-1; i >=0 ; i--){
+        for(int i = players.length-1; i >=0 ; i--)
             players[i].terminate();
-            if(players[i].isHuman() && players[i].playerThread != null) players[i].playerThread.interrupt();
-        }
-        notifyAll();
         td.terminate();
-        if(isSleeping) dealerThread.interrupt();
+        aiScheduler.terminate();
+        wakeUp();
         if (td.getTimerDealerThread() != null) {
             try {
                 td.getTimerDealerThread().join();
             } catch (InterruptedException ignored) {}
         }
+        if (aiScheduler.getSchedulerThread() != null) {
+            try {
+                aiScheduler.getSchedulerThread().join();
+            } catch (InterruptedException ignored) {}
+        }
     }
 
     /**
@@ -136,56 +199,109 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || !liveSets.anySetLeft();
     }
 
     /**
      * Checks if any cards should be removed from the table and returns them to the deck.
+     * Drains all the pending claims and verifies them as a single batch, refilling the table once at the end.
      */
+    private void removeCardsFromTable() {
+        for (Claim claim = claims.poll(); claim != null; claim = claims.poll())
+            batch.add(claim);
+        if (batch.isEmpty()) return;
+
+        boolean removed = false;
+        for (Claim claim : batch) {
+            // the table delay of removing a set is waited before locking its slots, so no player is blocked by it
+            // (only the dealer changes the cards, and the claimer waits for the verdict, so the claim stays current)
+            if (isCurrent(claim) && env.util.testSet(claim.card(0), claim.card(1), claim.card(2)))
+                table.delay(claim.size());
+            // only the claimed slots are locked, so the other players keep placing and removing tokens meanwhile
+            int[] locked = table.lockSlots(claimedSlots(claim));
+            try {
+                if (isCurrent(claim))
+                    removed |= verify(claim);
+            } finally {
+                table.unlockSlots(locked);
+            }
+            players[claim.player].claimVerified();
+        }
+        batch.clear();
+        if (removed)
+            refill();
+    }
 
-    private synchronized void removeCardsFromTable() {
-        // TODO implement
-        synchronized (table) {
-            while (!playersQueue.isEmpty()) {
-                Player shoutedSet = playersQueue.remove();
-                if(shoutedSet.getTokens().size() == three) {
-                    int[] cards = new int[three];
-                    LinkedList<Integer> tokens = shoutedSet.getTokens();
-                    LinkedList<Integer> tokens2 = new LinkedList<>(tokens);
-                    boolean cardsExist = true;
-                    for (int i = 0; i < cards.length && cardsExist; i++) {
-                        int slot = tokens.get(i);
-                        if (table.slotToCard[slot] != null) {
-                            cards[i] = table.slotToCard[slot];
-                        } else
-                            cardsExist = false;
-                    }
-                    if (cardsExist) {
-                        if (env.util.testSet(cards)) {
-                            LinkedList<Integer> clearTokensFromHere = null;
-                            while (tokens.size() > zero) {//remove tokens from the slot
-                                int slot = tokens.remove();
-                                clearTokensFromHere = new LinkedList<>(table.slotToTokens[slot]);
-                                for (int i = 0; i < clearTokensFromHere.size(); i++) {
-                                    int playerId = clearTokensFromHere.get(i);
-                                    Player player = findPlayer(playerId);
-                                    player.removeToken(slot);
-                                }
-                            }
-                            for (int i = 0; i < cards.length; i++) {
-                                table.removeCard(tokens2.get(i));
-                            }
-                            shoutedSet.point();
-                            placeCardsOnTable();
-                            elapsedTime = System.currentTimeMillis();
-                        } else {
-                            shoutedSet.givePenalty();
-                        }
-                        td.getTimerDealerThread().interrupt();
-                    }
-                }
+    /**
+     * Verifies a current claim: removes the set and gives the claimer a point, or penalizes the claimer.
+     *
+     * @param claim - the claim (its slots are locked by the caller).
+     * @return - true iff the claim was a legal set (and its cards were removed).
+     */
+    private boolean verify(Claim claim) {
+        Player claimer = players[claim.player];
+        boolean valid = env.util.testSet(claim.card(0), claim.card(1), claim.card(2));
+        if (valid) {
+            int[] slots = claimedSlots(claim);
+            for (int i = 0; i < slots.length; i++) {
+                //remove tokens from the slot (removing a token only clears bits already visited)
+                for (int p = table.nextTokenOwner(slots[i], 0); p >= 0; p = table.nextTokenOwner(slots[i], p + 1))
+                    players[p].removeToken(slots[i]);
+                liveSets.removeFromGame(claim.card(i));
             }
+            table.removeCards(slots);
+            claimer.point();
+            setsFound++;
+        } else {
+            claimer.givePenalty();
+        }
+        claimsVerified++;
+        GameLog log = gameLog;
+        if (log != null)
+            log.claim(claim, valid);
+        ClaimListener listener = claimListener;
+        if (listener != null)
+            listener.claimVerified(claim, valid);
+        return valid;
+    }
+
+    /**
+     * Refills the table after sets were removed from it.
+     */
+    private void refill() {
+        GameLog log = gameLog;
+        if (log != null)
+            log.refill();
+        placeCardsOnTable();
+        elapsedTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return - the slots of a claim.
+     */
+    private static int[] claimedSlots(Claim claim) {
+        int[] slots = new int[claim.size()];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = claim.slot(i);
+        return slots;
+    }
+
+    /**
+     * Checks if a claim still refers to the table: every claimed slot holds the card it held when the claim was made
+     * (i.e. no earlier claim or reshuffle removed it) and the claimer's token is still on it.
+     *
+     * @param claim - the claim.
+     * @return - true iff the claim should be verified.
+     */
+    private boolean isCurrent(Claim claim) {
+        if (claim.size() != three) return false;
+        for (int i = 0; i < claim.size(); i++) {
+            int slot = claim.slot(i);
+            Integer card = table.slotToCard[slot];
+            if (card == null || card != claim.card(i) || !table.hasToken(claim.player, slot))
+                return false;
         }
+        return true;
     }
 
 
@@ -194,48 +310,53 @@ public class Dealer implements Runnable {
      */
     private void placeCardsOnTable() {
         // TODO implement
-        Random rand = new Random();
-        int cardIndex = -1;
-        if(!deck.isEmpty())
-            cardIndex = rand.nextInt(deck.size());
-        LinkedList<Integer> slots = new LinkedList<>();
+        IntDeck slots = new IntDeck(table.slotToCard.length);
         for(int i = 0; i < table.slotToCard.length; i++){
             if(table.slotToCard[i] == null)
                 slots.add(i);
         }
-        int slotIndex = -1;
-        while(!deck.isEmpty() && !slots.isEmpty()) {
-            slotIndex = rand.nextInt(slots.size());
-            Integer card = deck.remove(cardIndex);
-            if(!deck.isEmpty())
-                cardIndex = rand.nextInt(deck.size());
-            table.placeCard(card, slots.get(slotIndex));
-            env.ui.placeCard(card, slots.get(slotIndex));
-            slots.remove(slotIndex);
+        int count = Math.min(deck.size(), slots.size());
+        int[] placedSlots = new int[count];
+        int[] placedCards = new int[count];
+        for (int i = 0; i < count; i++) {
+            placedSlots[i] = slots.draw(random);
+            placedCards[i] = deck.draw(random);
+            liveSets.placeOnTable(placedCards[i]);
         }
+        // a single table transaction and a single ui update for the whole deal
+        table.placeCards(placedCards, placedSlots);
+        // the computer players with nothing to press wait for the table to change (cards are removed only before a deal)
+        for (Player player : players)
+            player.tableChanged();
         updateTimerDisplay(true);
     }
 
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Parks until the reshuffle deadline, and is unparked by claim arrivals and termination. Every wakeup (including
+     * a spurious one) rechecks the conditions, and an unpark that comes before the park is not lost.
      */
     private void sleepUntilWokenOrTimeout() {
-        // TODO implement
-        synchronized(this){
-            notifyAll();
-        }
-        if(playersQueue.isEmpty()) {
-            try {
-                isSleeping = true;
-                if(reshuffleTime - System.currentTimeMillis() <= zero)
-                    updateTimerDisplay(true);
-                else
-                    Thread.sleep(reshuffleTime - System.currentTimeMillis());
-            } catch (InterruptedException ignored) {
-                isSleeping = false;
-            }
+        if (env.config.turnTimeoutMillis <= zero) { // no deadline: only a claim (or termination) changes anything
+            while (!terminate && claims.isEmpty())
+                LockSupport.park(this);
+            return;
         }
-        isSleeping = false;
+        long remaining;
+        while (!terminate && claims.isEmpty() && (remaining = reshuffleTime - System.currentTimeMillis()) > zero)
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+    }
+
+    /**
+     * Checks if the table should be reshuffled: when the countdown is over or, if there is no countdown
+     * (turnTimeoutMillis <= 0), when there is no legal set on the table.
+     *
+     * @return - true iff the table should be reshuffled.
+     */
+    private boolean turnTimedOut() {
+        if (env.config.turnTimeoutMillis <= zero)
+            return liveSets.setsOnTable() == zero;
+        return System.currentTimeMillis() >= reshuffleTime;
     }
 
     /**
@@ -248,33 +369,51 @@ public class Dealer implements Runnable {
         }
     }
 
+    /**
+     * Returns all the cards from the table to the deck and deals again (unless the game is over).
+     */
+    private void reshuffle() {
+        GameLog log = gameLog;
+        if (log != null)
+            log.reshuffle();
+        removeAllCardsFromTable();
+    }
+
     /**
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
         // TODO implement
-        synchronized (table) {
-            env.ui.removeTokens();
-            Random rand = new Random();
-            LinkedList<Integer> slots = new LinkedList<>();
-            for (int i = 0; i < table.slotToCard.length; i++) {
-                slots.add(i);
-            }
+        int cards = 0;
+        for (Integer card : table.slotToCard)
+            if (card != null) cards++;
+        table.delay(cards); // before locking the table (only the dealer changes the cards)
+        table.lockAllSlots();
+        try {
+            IntDeck slots = IntDeck.full(table.slotToCard.length);
+            int[] returned = new int[slots.size()];
+            int[] removed = new int[slots.size()];
+            int count = 0;
             while (!slots.isEmpty()) {
-                int index = rand.nextInt(slots.size());
-                Integer card = table.slotToCard[slots.get(index)];
-                if (card != null)
-                    deck.add(card);
-                table.removeCard(slots.get(index));
-                slots.remove(index);
+                int slot = slots.draw(random);
+                Integer card = table.slotToCard[slot];
+                if (card != null) {
+                    removed[count] = slot;
+                    returned[count++] = card;
+                    liveSets.returnToDeck(card);
+                }
             }
+            table.removeCards(Arrays.copyOf(removed, count));
+            deck.addAll(returned, count);
             //remove all tokens
             for (Player p : players)
                 p.clearTokens();
             shuffle();
-            if (!shouldFinish())
-                placeCardsOnTable();
+        } finally {
+            table.unlockAllSlots();
         }
+        if (!shouldFinish())
+            placeCardsOnTable(); // the table is unlocked while the new cards are delayed
     }
 
     /**
@@ -305,15 +444,7 @@ public class Dealer implements Runnable {
     }
 
     private void shuffle(){ //myFunc
-        Collections.shuffle(deck);
-    }
-
-    private Player findPlayer(int playerId){
-        for(Player p : players) {
-            if(p.id == playerId)
-                return p;
-        }
-        return null;
+        deck.shuffle(random);
     }
 
     public Thread getDealerThread(){
@@ -324,12 +455,23 @@ public class Dealer implements Runnable {
         return td;
     }
 
-    public synchronized void addPlayerToQueue(Player player){
-        playersQueue.add(player);
+    /**
+     * Publishes a claim for verification and wakes up the dealer. Called by the claiming player's thread.
+     *
+     * @param claim - the claim.
+     */
+    public void submitClaim(Claim claim){
+        claims.add(claim);
+        wakeUp();
     }
 
-    public boolean isSleeping(){
-        return isSleeping;
+    /**
+     * Wakes up the dealer thread if it is parked (or makes its next park return immediately).
+     */
+    private void wakeUp(){
+        Thread thread = dealerThread;
+        if (thread != null)
+            LockSupport.unpark(thread);
     }
 
 
@@ -341,7 +483,68 @@ public class Dealer implements Runnable {
 
     public long getElapsedTime(){ return elapsedTime;}
 
+    public int getClaimsVerified(){ return claimsVerified; }
+
+    public int getSetsFound(){ return setsFound; }
+
+    /**
+     * @param listener - notified of every verified claim, on the dealer thread (null for none).
+     */
+    public void setClaimListener(ClaimListener listener){ claimListener = listener; }
+
+    /**
+     * @param log - records the claims and the table changes of the game, for a replay (null for none).
+     */
+    public void setGameLog(GameLog log){ gameLog = log; }
+
+    /**
+     * @return - the seed of the game's randomness.
+     */
+    public long getSeed(){ return seed; }
+
+    /**
+     * Splits a source of randomness off the game's source (e.g. for a computer player). Called on the thread
+     * creating the game, so the sources do not depend on thread scheduling.
+     *
+     * @return - a new source of randomness.
+     */
+    public SplittableRandom splitRandom(){ return random.split(); }
+
+    /**
+     * Replay steps, called by GameLog.replay instead of running the dealer thread.
+     */
+    void replayDeal() {
+        placeCardsOnTable();
+    }
+
+    /**
+     * @return - true iff the claim was a legal set.
+     * @throws IllegalStateException - if the claim does not refer to the table.
+     */
+    boolean replayClaim(Claim claim) {
+        int[] locked = table.lockSlots(claimedSlots(claim));
+        try {
+            if (!isCurrent(claim))
+                throw new IllegalStateException("claim of player " + claim.player + " does not refer to the table");
+            return verify(claim);
+        } finally {
+            table.unlockSlots(locked);
+        }
+    }
+
+    void replayRefill() {
+        refill();
+    }
+
+    void replayReshuffle() {
+        reshuffle();
+    }
+
+    boolean isGameOver() {
+        return !liveSets.anySetLeft();
+    }
+
     public boolean isQueueEmpty(){ //for testing purpose only
-        return playersQueue.isEmpty();
+        return claims.isEmpty();
     }
 }
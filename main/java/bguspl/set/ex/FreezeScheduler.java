@@ -0,0 +1,111 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the freezes of the players (after a point or a penalty).
+ * Every frozen player has a single entry in a delay queue, due at the next change of its displayed countdown (whole
+ * seconds) or at the end of its freeze. The timer drains the due entries, so the cost of a freeze is a few queue
+ * operations per displayed second, regardless of how many players are frozen, and a player is unfrozen by an event
+ * rather than by sleeping.
+ */
+public class FreezeScheduler {
+
+    private static final long second = TimeUnit.SECONDS.toNanos(1);
+
+    private final Env env;
+
+    private final DelayQueue<Freeze> freezes = new DelayQueue<>();
+
+    /**
+     * A freeze of a player.
+     */
+    private static final class Freeze implements Delayed {
+
+        private final Player player;
+
+        /**
+         * The time (System.nanoTime) the freeze ends.
+         */
+        private final long deadline;
+
+        /**
+         * The time (System.nanoTime) of the next event of the freeze: a change of its display or its end.
+         * Changed only while the freeze is not in the queue.
+         */
+        private long due;
+
+        private Freeze(Player player, long deadline) {
+            this.player = player;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(due, ((Freeze) other).due);
+        }
+    }
+
+    public FreezeScheduler(Env env) {
+        this.env = env;
+    }
+
+    /**
+     * Freezes a player and displays its freeze.
+     *
+     * @param player - the player to freeze.
+     * @param millis - the length of the freeze.
+     * @return - true iff the freeze is the earliest event in the scheduler (i.e. the timer should be woken up).
+     */
+    public boolean freeze(Player player, long millis) {
+        long now = System.nanoTime();
+        Freeze freeze = new Freeze(player, now + TimeUnit.MILLISECONDS.toNanos(millis));
+        freeze.due = nextEvent(freeze, now);
+        env.ui.setFreeze(player.id, millis);
+        freezes.add(freeze);
+        return freezes.peek() == freeze;
+    }
+
+    /**
+     * Handles the due events: updates the displays of the frozen players and unfreezes the players whose freeze ended.
+     */
+    public void expire() {
+        for (Freeze freeze = freezes.poll(); freeze != null; freeze = freezes.poll()) {
+            long now = System.nanoTime();
+            long remaining = freeze.deadline - now;
+            if (remaining <= 0) {
+                env.ui.setFreeze(freeze.player.id, 0);
+                freeze.player.unfreeze();
+            } else {
+                env.ui.setFreeze(freeze.player.id, TimeUnit.NANOSECONDS.toMillis(remaining));
+                freeze.due = nextEvent(freeze, now);
+                freezes.add(freeze);
+            }
+        }
+    }
+
+    /**
+     * @return - the nanoseconds until the next event (Long.MAX_VALUE if no player is frozen).
+     */
+    public long nanosToNextEvent() {
+        Freeze next = freezes.peek();
+        return next == null ? Long.MAX_VALUE : next.getDelay(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return - the time the displayed seconds of a freeze change next (or the freeze ends).
+     */
+    private static long nextEvent(Freeze freeze, long now) {
+        long remaining = freeze.deadline - now;
+        return remaining <= 0 ? freeze.deadline : freeze.deadline - (remaining - 1) / second * second;
+    }
+}
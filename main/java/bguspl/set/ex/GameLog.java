@@ -0,0 +1,162 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A record of a game, from which the game can be replayed exactly: the seed of its randomness and the events that
+ * changed the table, in order. The events are the verified claims, the refills of the table after sets were removed,
+ * and the reshuffles. Everything else in a game (the deals, the shuffles, the points, the penalties and the end of
+ * the game) follows from the seed and these events.
+ * <p>
+ * The log is saved as text, one line per event: "seed &lt;seed&gt;" first, then
+ * "claim &lt;player&gt; &lt;slots&gt; &lt;cards&gt; &lt;valid&gt;", "refill" or "reshuffle".
+ */
+public class GameLog {
+
+    private static final String seedEvent = "seed", claimEvent = "claim", refillEvent = "refill", reshuffleEvent = "reshuffle";
+
+    private final long seed;
+
+    /**
+     * The events, as saved (written by the dealer thread only).
+     */
+    private final List<String> events = new ArrayList<>();
+
+    /**
+     * @param seed - the seed of the game's randomness (see Dealer.getSeed).
+     */
+    public GameLog(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return - the number of events.
+     */
+    public int size() {
+        return events.size();
+    }
+
+    void claim(Claim claim, boolean valid) {
+        StringBuilder event = new StringBuilder(claimEvent).append(' ').append(claim.player);
+        for (int i = 0; i < claim.size(); i++)
+            event.append(' ').append(claim.slot(i));
+        for (int i = 0; i < claim.size(); i++)
+            event.append(' ').append(claim.card(i));
+        events.add(event.append(' ').append(valid).toString());
+    }
+
+    void refill() {
+        events.add(refillEvent);
+    }
+
+    void reshuffle() {
+        events.add(reshuffleEvent);
+    }
+
+    /**
+     * Saves the log to a file.
+     *
+     * @param file - the file.
+     */
+    public void save(Path file) throws IOException {
+        List<String> lines = new ArrayList<>(events.size() + 1);
+        lines.add(seedEvent + " " + seed);
+        lines.addAll(events);
+        Files.write(file, lines);
+    }
+
+    /**
+     * Loads a log saved by save.
+     *
+     * @param file - the file.
+     * @return - the log.
+     */
+    public static GameLog load(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file);
+        if (lines.isEmpty() || !lines.get(0).startsWith(seedEvent + " "))
+            throw new IOException(file + " is not a game log");
+        GameLog log = new GameLog(Long.parseLong(lines.get(0).substring(seedEvent.length() + 1).trim()));
+        for (String line : lines.subList(1, lines.size()))
+            if (!line.trim().isEmpty())
+                log.events.add(line.trim());
+        return log;
+    }
+
+    /**
+     * Replays the game on the current thread, with the real table, dealer and players (whose threads are not
+     * started), checking that every claim refers to the same cards and gets the same verdict as in the log.
+     *
+     * @param env - the environment of the game (its configuration should be the one the game was played with).
+     * @return - the final scores of the players.
+     * @throws IllegalStateException - if the replay diverges from the log.
+     */
+    public int[] replay(Env env) {
+        Player[] players = new Player[env.config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players, seed);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        if (!dealer.isGameOver())
+            dealer.replayDeal();
+        for (int e = 0; e < events.size(); e++) {
+            String[] event = events.get(e).split(" ");
+            switch (event[0]) {
+                case claimEvent:
+                    replayClaim(event, e, table, dealer, players);
+                    break;
+                case refillEvent:
+                    dealer.replayRefill();
+                    break;
+                case reshuffleEvent:
+                    dealer.replayReshuffle();
+                    break;
+                default:
+                    throw new IllegalStateException("event " + (e + 1) + ": unknown event " + event[0]);
+            }
+        }
+
+        int[] scores = new int[players.length];
+        for (int i = 0; i < players.length; i++)
+            scores[i] = players[i].score();
+        return scores;
+    }
+
+    /**
+     * Places the claimer's tokens on the claimed slots (only), and lets the dealer verify the claim.
+     */
+    private static void replayClaim(String[] event, int index, Table table, Dealer dealer, Player[] players) {
+        int size = (event.length - 3) / 2;
+        int player = Integer.parseInt(event[1]);
+        int[] slots = new int[size];
+        int[] cards = new int[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = Integer.parseInt(event[2 + i]);
+            cards[i] = Integer.parseInt(event[2 + size + i]);
+        }
+        boolean valid = Boolean.parseBoolean(event[event.length - 1]);
+
+        for (int slot : players[player].getTokens())
+            players[player].removeToken(slot);
+        for (int i = 0; i < size; i++) {
+            Integer card = table.slotToCard[slots[i]];
+            if (card == null || card != cards[i])
+                throw new IllegalStateException("event " + (index + 1) + ": slot " + slots[i] + " holds card " + card
+                        + " instead of " + cards[i]);
+            players[player].placeToken(slots[i]);
+        }
+        if (dealer.replayClaim(new Claim(player, slots, cards)) != valid)
+            throw new IllegalStateException("event " + (index + 1) + ": the claim was " + (valid ? "valid" : "invalid")
+                    + " in the log");
+    }
+}
@@ -0,0 +1,150 @@
+package bguspl.set.ex;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.RandomAccess;
+
+/**
+ * A deck of card ids stored as primitive ints (no boxing), in an array with a size.
+ * The order of the cards is arbitrary: drawing swaps the drawn card with the last one.
+ *
+ * @inv 0 <= size <= cards.length
+ */
+public class IntDeck {
+
+    /**
+     * The cards in the deck are cards[0..size-1].
+     */
+    private final int[] cards;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    /**
+     * Creates an empty deck.
+     *
+     * @param capacity - the maximal number of cards in the deck.
+     */
+    public IntDeck(int capacity) {
+        cards = new int[capacity];
+    }
+
+    /**
+     * Creates a deck with all the cards between 0 and deckSize - 1.
+     *
+     * @param deckSize - the number of cards.
+     * @return - the full deck.
+     */
+    public static IntDeck full(int deckSize) {
+        IntDeck deck = new IntDeck(deckSize);
+        for (int card = 0; card < deckSize; ++card)
+            deck.cards[card] = card;
+        deck.size = deckSize;
+        return deck;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index - the index of the card (between 0 and size - 1).
+     * @return - the card at the index.
+     */
+    public int get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException("index " + index + " size " + size);
+        return cards[index];
+    }
+
+    /**
+     * Adds a card to the deck.
+     *
+     * @param card - the card id.
+     * @pre - size() < capacity.
+     */
+    public void add(int card) {
+        cards[size++] = card;
+    }
+
+    /**
+     * Adds the first count cards of an array to the deck (e.g. the cards returned from the table).
+     *
+     * @param returned - the cards to add.
+     * @param count    - the number of cards to add.
+     * @pre - size() + count <= capacity.
+     */
+    public void addAll(int[] returned, int count) {
+        System.arraycopy(returned, 0, cards, size, count);
+        size += count;
+    }
+
+    /**
+     * Removes a random card from the deck in O(1) (the last card takes its place).
+     *
+     * @param random - the source of randomness.
+     * @return - the removed card.
+     * @pre - !isEmpty().
+     */
+    public int draw(SplittableRandom random) {
+        int index = random.nextInt(size);
+        int card = cards[index];
+        cards[index] = cards[--size];
+        return card;
+    }
+
+    /**
+     * Removes a given card from the deck (the last card takes its place).
+     *
+     * @param card - the card id.
+     * @return - true iff the card was in the deck.
+     */
+    public boolean remove(int card) {
+        for (int i = 0; i < size; ++i)
+            if (cards[i] == card) {
+                cards[i] = cards[--size];
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * Shuffles the deck in place (Fisher-Yates).
+     *
+     * @param random - the source of randomness.
+     */
+    public void shuffle(SplittableRandom random) {
+        for (int i = size - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+        }
+    }
+
+    /**
+     * @return - a read-only view of the deck (reflects later changes to the deck).
+     */
+    public List<Integer> asList() {
+        return new View();
+    }
+
+    private class View extends AbstractList<Integer> implements RandomAccess {
+
+        @Override
+        public Integer get(int index) {
+            return IntDeck.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
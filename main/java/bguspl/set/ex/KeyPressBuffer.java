@@ -0,0 +1,97 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free ring buffer of the key presses (slots) of a player.
+ * It has a single producer (the keyboard input thread or the computer player thread) and a single consumer (the
+ * player thread). When full, offer rejects the new press (a producer that must not lose presses checks isFull first)
+ * and offerDroppingOldest drops the oldest press, in which case it competes with the consumer for the head of the
+ * buffer.
+ *
+ * @inv 0 <= tail - head <= capacity
+ */
+public class KeyPressBuffer {
+
+    private final int[] presses;
+
+    /**
+     * The index of the next press to take (grows forever; the position in the array is index % capacity).
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The index of the next press to put (written by the producer only).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity - the maximal number of pending presses.
+     */
+    public KeyPressBuffer(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity " + capacity + " is not positive");
+        presses = new int[capacity];
+    }
+
+    public int capacity() {
+        return presses.length;
+    }
+
+    /**
+     * @return - the number of pending presses.
+     */
+    public int size() {
+        long t = tail.get();
+        return (int) Math.max(0, t - head.get());
+    }
+
+    public boolean isFull() {
+        return size() >= presses.length;
+    }
+
+    /**
+     * Adds a press if there is room. Called by the producer only.
+     *
+     * @param slot - the pressed slot.
+     * @return - true iff the press was added.
+     */
+    public boolean offer(int slot) {
+        long t = tail.get();
+        if (t - head.get() >= presses.length)
+            return false;
+        // the element at t was already taken (head > t - capacity), so the consumer no longer reads it
+        presses[(int) (t % presses.length)] = slot;
+        tail.set(t + 1); // publishes the press
+        return true;
+    }
+
+    /**
+     * Adds a press, dropping the oldest pending press if the buffer is full. Called by the producer only.
+     *
+     * @param slot - the pressed slot.
+     */
+    public void offerDroppingOldest(int slot) {
+        while (!offer(slot)) {
+            long h = head.get();
+            if (tail.get() - h >= presses.length)
+                head.compareAndSet(h, h + 1); // if the consumer took it meanwhile, there is room anyway
+        }
+    }
+
+    /**
+     * Takes the oldest pending press. Called by the consumer only.
+     *
+     * @return - the pressed slot (-1 if there is none).
+     */
+    public int poll() {
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get())
+                return -1;
+            int slot = presses[(int) (h % presses.length)];
+            // the producer overwrites this element only after head passed h, in which case the CAS fails
+            if (head.compareAndSet(h, h + 1))
+                return slot;
+        }
+    }
+}
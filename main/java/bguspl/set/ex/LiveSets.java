@@ -0,0 +1,187 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+
+/**
+ * An incrementally maintained index of the legal sets among the cards that are still in the game.
+ * Every card move costs O(n) (for sets of 3 cards), and the game end and table queries cost O(1).
+ *
+ * @inv onTable.contains(x) => inGame.contains(x)
+ * @inv gameSets == the number of legal sets in inGame, tableSets == the number of legal sets in onTable
+ */
+public class LiveSets {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The cards in the dealer's deck or on the table.
+     */
+    private final Cards inGame;
+
+    /**
+     * The cards on the table.
+     */
+    private final Cards onTable;
+
+    /**
+     * The number of legal sets among the cards in the game.
+     */
+    private int gameSets;
+
+    /**
+     * The number of legal sets among the cards on the table.
+     */
+    private int tableSets;
+
+    /**
+     * A reusable buffer for the cards passed to Util::completeSet.
+     */
+    private final int[] candidate;
+
+    public LiveSets(Env env) {
+        this.env = env;
+        inGame = new Cards(env.config.deckSize);
+        onTable = new Cards(env.config.deckSize);
+        candidate = new int[Math.max(env.config.featureSize - 1, 0)];
+    }
+
+    /**
+     * Adds a card to the dealer's deck.
+     *
+     * @param card - the card id.
+     */
+    public void addToDeck(int card) {
+        if (inGame.contains(card)) return;
+        gameSets += countSetsWith(card, inGame);
+        inGame.add(card);
+    }
+
+    /**
+     * Moves a card from the dealer's deck to the table.
+     *
+     * @param card - the card id.
+     */
+    public void placeOnTable(int card) {
+        if (!inGame.contains(card)) addToDeck(card);
+        if (onTable.contains(card)) return;
+        tableSets += countSetsWith(card, onTable);
+        onTable.add(card);
+    }
+
+    /**
+     * Moves a card from the table back to the dealer's deck.
+     *
+     * @param card - the card id.
+     */
+    public void returnToDeck(int card) {
+        if (!onTable.contains(card)) return;
+        onTable.remove(card);
+        tableSets -= countSetsWith(card, onTable);
+    }
+
+    /**
+     * Removes a card from the game (e.g. a card of a set that was claimed).
+     *
+     * @param card - the card id.
+     */
+    public void removeFromGame(int card) {
+        returnToDeck(card);
+        if (!inGame.contains(card)) return;
+        inGame.remove(card);
+        gameSets -= countSetsWith(card, inGame);
+    }
+
+    /**
+     * @return - true iff there is a legal set among the cards in the deck and on the table.
+     */
+    public boolean anySetLeft() {
+        return gameSets > 0;
+    }
+
+    /**
+     * @return - the number of legal sets among the cards on the table.
+     */
+    public int setsOnTable() {
+        return tableSets;
+    }
+
+    /**
+     * Counts the legal sets made of a card and cards from a collection.
+     *
+     * @param card  - the card id (not in the collection).
+     * @param cards - the collection of cards.
+     * @return - the number of legal sets containing card and featureSize - 1 cards from the collection.
+     */
+    private int countSetsWith(int card, Cards cards) {
+        int r = env.config.featureSize;
+        if (r < 2 || cards.size < r - 1) return 0;
+        if (r == 2) { // a single card does not determine its partner
+            int sets = 0;
+            for (int i = 0; i < cards.size; ++i)
+                if (env.util.testSet(new int[]{card, cards.cards[i]})) ++sets;
+            return sets;
+        }
+
+        // walk the (r - 2)-combinations of the collection and complete each one (with the card) to a set
+        int m = r - 2;
+        int[] combination = new int[m];
+        for (int i = 0; i < m; ++i)
+            combination[i] = i;
+
+        int sets = 0;
+        candidate[0] = card;
+        while (combination[m - 1] < cards.size) {
+            for (int i = 0; i < m; ++i)
+                candidate[i + 1] = cards.cards[combination[i]];
+            int completion = env.util.completeSet(candidate);
+            // only count completions that come after the combination, so every set is counted once
+            if (completion >= 0 && cards.position[completion] > combination[m - 1])
+                ++sets;
+
+            // generate next combination in lexicographic order
+            int t = m - 1;
+            while (t != 0 && combination[t] == cards.size - m + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < m; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return sets;
+    }
+
+    /**
+     * A collection of card ids with O(1) membership, insertion and removal.
+     */
+    private static class Cards {
+
+        private final int[] cards;
+        private final int[] position; // the index of each card in cards (-1 if none)
+        private int size;
+
+        private Cards(int deckSize) {
+            cards = new int[deckSize];
+            position = new int[deckSize];
+            Arrays.fill(position, -1);
+        }
+
+        private boolean contains(int card) {
+            return position[card] >= 0;
+        }
+
+        private void add(int card) {
+            cards[size] = card;
+            position[card] = size++;
+        }
+
+        private void remove(int card) {
+            int index = position[card];
+            int last = cards[--size];
+            cards[index] = last;
+            position[last] = index;
+            position[card] = -1;
+        }
+    }
+}
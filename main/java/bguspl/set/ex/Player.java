@@ -2,9 +2,9 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class manages the players' threads and data
@@ -32,7 +32,7 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    public Thread playerThread;
+    public volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
@@ -54,7 +54,10 @@ public class Player implements Runnable {
      */
     private int score;
 
-    private LinkedList<Integer> tokens; //myField
+    /**
+     * The slots of the player's tokens.
+     */
+    private final TokenSet tokens = new TokenSet();
 
     private Dealer dealer;
 
@@ -63,17 +66,42 @@ public class Player implements Runnable {
     private volatile boolean gotPenalty;
 
 
-    private Queue<Integer> pressed;
+    /**
+     * The pending key presses (slots) of the player.
+     */
+    private final KeyPressBuffer pressed;
 
     private long freezeTime;
 
+    /**
+     * True iff the player published a claim that the dealer did not verify yet.
+     */
+    private volatile boolean awaitingVerdict;
 
-    public final Object tokensLock = new Object();
+    /**
+     * True iff the player is frozen (after a point or a penalty) and waits to be unfrozen.
+     */
+    private volatile boolean frozen;
 
-    public final Object waitForPress = new Object();
 
     private static final int three = 3;
 
+    /**
+     * The strategy of a computer player (null for a human player).
+     */
+    private final AiStrategy strategy;
+
+    /**
+     * True iff the key presses of the computer player are generated by the dealer's AI scheduler at a fixed rate
+     * (rather than by its own thread, as fast as the player handles them).
+     */
+    private final boolean paced;
+
+    /**
+     * The source of randomness of the computer player's thread (split from the game's source).
+     */
+    private final SplittableRandom random;
+
     private static final int zero = 0;
 
     private  Player joinMe;
@@ -95,10 +123,12 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-        tokens = new LinkedList<Integer>();
         gotPoint = false;
         gotPenalty = false;
-        pressed = new LinkedList<Integer>();
+        pressed = new KeyPressBuffer(env.config.keyPressBufferSize);
+        strategy = human ? null : AiStrategy.of(env.config.aiStrategies[id], env.config, env.logger);
+        paced = !human && env.config.aiPressesPerSecond[id] > 0;
+        random = dealer.splitRandom();
     }
 
     /**
@@ -108,48 +138,23 @@ public class Player implements Runnable {
     public void run() {
         playerThread = Thread.currentThread();
         System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
-        if (!human)
+        if (!human && !paced)
             createArtificialIntelligence();
+        // the player parks instead of waiting on a monitor, so a virtual player thread never pins its carrier
         while (!terminate) {
-            // TODO implement main player loop
-            if(!human) {
-                synchronized (this) {
-                    if (gotPoint)
-                        pointFreeze();
-                    if (gotPenalty)
-                        penalty();
-                    if (pressed.size() > zero) {
-                        int slot = pressed.remove();
-                        keyPressed2(slot);
-                        notifyAll();
-                    } else {
-                        if (!terminate) {
-                            try {
-                                wait();
-                            } catch (InterruptedException ignored) {}
-                        }
-                    }
-                }
-            }
-            else {
-                if (gotPoint)
-                    pointFreeze();
-                if (gotPenalty)
-                    penalty();
-                if (pressed.size() > zero) {
-                    int slot = pressed.remove();
-                    keyPressed2(slot);
-                }
-                else{
-                    synchronized (waitForPress){
-                        try{
-                            waitForPress.wait();
-                        }catch (InterruptedException ignored){}
-                    }
-                }
+            if (gotPoint)
+                pointFreeze();
+            if (gotPenalty)
+                penalty();
+            int slot = pressed.poll();
+            if (slot != -1) {
+                keyPressed2(slot);
+                wake(aiThread); // a press was consumed, so the AI may generate another one
+            } else if (!terminate) {
+                LockSupport.park(this);
             }
         }
-        if (!human) try {aiThread.join();} catch (InterruptedException ignored) {}
+        if (aiThread != null) try {aiThread.join();} catch (InterruptedException ignored) {}
         if(joinMe != null){
         if(joinMe.playerThread != null) try {joinMe.playerThread.join();} catch (InterruptedException ignored) {}}
         System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
@@ -157,46 +162,84 @@ public class Player implements Runnable {
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses, chosen by the player's strategy. If the queue of key presses is full, the thread waits until it is
+     * not full (a strategy that looks at the tokens waits until the queue is empty). When the strategy has nothing to
+     * press, the thread parks until the cards on the table or the player's tokens change.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very very smart AI (!)
-        aiThread = new Thread(() -> {
+        aiThread = env.threads.newThread(() -> {
             System.out.printf("Info: Thread %s starting.%n", Thread.currentThread().getName());
             while (!terminate) {
-                // TODO implement player key press simulator
-                Random rand = new Random();
-                int slot = -1;
-                while ((slot == -1 || table.slotToCard[slot] == null) && !terminate){
-                    slot = rand.nextInt(table.slotToCard.length);
-                }
-                synchronized (this) {
-                    if((pressed.size() >= three) && !terminate) {
-                        try {
-                            wait();
-                        } catch (InterruptedException ignored) {}
-                    }
-                    if(pressed.size() < three){
-                        keyPressed(slot);
-                        notifyAll();
-                    }
+                while (!readyForPress() && !terminate)
+                    LockSupport.park(this);
+                if (terminate) break;
+
+                long cardChanges = table.cardChanges();
+                int[] mine = tokens.snapshot();
+                int slot = strategy.nextPress(table.snapshot(), mine, random);
+                if (slot == -1) {
+                    // woken by tableChanged or by a change of the tokens (an unpark after the reads is not lost)
+                    while (!terminate && table.cardChanges() == cardChanges && Arrays.equals(tokens.snapshot(), mine))
+                        LockSupport.park(this);
+                    continue;
                 }
+                long thinkUntil = System.nanoTime() + strategy.thinkingNanos(random);
+                long remaining;
+                while (!terminate && (remaining = thinkUntil - System.nanoTime()) > zero)
+                    LockSupport.parkNanos(this, remaining);
+                if (!terminate)
+                    keyPressed(slot);
             }
             if(joinMe != null){
             if(joinMe.aiThread != null) try{ joinMe.aiThread.join(); } catch (InterruptedException ignored){}}
             System.out.printf("Info: Thread %s terminated.%n", Thread.currentThread().getName());
-        }, "computer-" + id);
+        });
+        aiThread.setName("computer-" + id);
         aiThread.start();
     }
 
+    /**
+     * Backpressure: a computer player generates no key presses while its queue is full, a claim is pending or it is
+     * frozen (and a strategy that looks at the tokens waits until the queue is empty).
+     *
+     * @return - true iff the computer player may generate a key press now.
+     */
+    private boolean readyForPress() {
+        return !pressed.isFull() && (strategy.blind() || pressed.size() == zero)
+                && !awaitingVerdict && !gotPoint && !gotPenalty;
+    }
+
+    /**
+     * Generates a single key press of a paced computer player (skipped if the player is not ready for it).
+     * Called by the thread of the AI scheduler.
+     *
+     * @param random - the source of randomness of the scheduler's thread.
+     * @return - the nanoseconds the player thinks before its next key press (on top of its pace).
+     */
+    public long aiPress(SplittableRandom random) {
+        if (!terminate && readyForPress()) {
+            int slot = strategy.nextPress(table.snapshot(), tokens.snapshot(), random);
+            if (slot != -1)
+                keyPressed(slot);
+        }
+        return strategy.thinkingNanos(random);
+    }
+
+    /**
+     * @return - true iff the key presses of the player are generated by the AI scheduler.
+     */
+    public boolean isPaced() {
+        return paced;
+    }
+
     /**
      * Called when the game should be terminated due to an external event.
      */
     public void terminate() {
         // TODO implement
         terminate = true;
-        if(!human && aiThread != null)
-            aiThread.interrupt();
+        wake(playerThread);
+        wake(aiThread);
     }
 
     /**
@@ -208,10 +251,11 @@ public class Player implements Runnable {
 
     public void keyPressed(int slot) {
         if(!gotPoint && !gotPenalty) {
-            pressed.add(slot);
-            synchronized (waitForPress) {
-                waitForPress.notifyAll();
-            }
+            if (human)
+                pressed.offerDroppingOldest(slot); // the latest presses of a human player matter
+            else if (!pressed.offer(slot)) // computer presses come only when readyForPress (the buffer is not full)
+                env.logger.severe("player " + (id + 1) + " key press on slot " + slot + " dropped: the buffer is full");
+            wake(playerThread);
         }
     }
 
@@ -220,10 +264,10 @@ public class Player implements Runnable {
         if (tokens.contains(slot))
             removeToken(slot);
         else {
-            if (tokens.size() < three) {
+            if (tokens.size() < TokenSet.capacity) {
                 if(table.slotToCard[slot] != null)
                     placeToken(slot);
-                if(tokens.size() == three) {
+                if(tokens.size() == TokenSet.capacity) {
                     shoutSet();
                 }
             }
@@ -249,21 +293,37 @@ public class Player implements Runnable {
      */
     public void penalty() {
         // TODO implement
-        setFreezeTime(env.config.penaltyFreezeMillis); // = env.config.penaltyFreezeMillis
-        dealer.getTd().freezePlayer(this);
-        try{
-              Thread.sleep(env.config.penaltyFreezeMillis);
-        }catch (InterruptedException ignored){}
+        freeze(env.config.penaltyFreezeMillis);
         gotPenalty = false;
+        wake(aiThread);
     }
 
     public void pointFreeze() {
-        setFreezeTime(env.config.pointFreezeMillis); //env.config.pointFreezeMillis
-        dealer.getTd().freezePlayer(this);
-        try{
-            Thread.sleep(env.config.pointFreezeMillis);
-        }catch (InterruptedException ignored){}
+        freeze(env.config.pointFreezeMillis);
         gotPoint = false;
+        wake(aiThread);
+    }
+
+    /**
+     * Freezes the player and parks until the timer unfreezes it (or the game is terminated).
+     *
+     * @param millis - the length of the freeze.
+     */
+    private void freeze(long millis) {
+        if (millis <= zero) return;
+        setFreezeTime(millis);
+        frozen = true;
+        dealer.getTd().freezePlayer(this, millis);
+        while (frozen && !terminate)
+            LockSupport.park(this);
+    }
+
+    /**
+     * Called by the timer when the player's freeze ends.
+     */
+    public void unfreeze() {
+        frozen = false;
+        wake(playerThread);
     }
 
     public int score() {
@@ -271,52 +331,82 @@ public class Player implements Runnable {
     }
 
     public void clearTokens(){
-        synchronized (tokensLock) {
-            tokens.clear();
-        }
+        tokens.clear();
+        wake(aiThread);
+    }
+
+    /**
+     * Called by the dealer after it changed the cards on the table, to wake the computer player if it waits for that.
+     */
+    public void tableChanged() {
+        wake(aiThread);
     }
 
 
     private void shoutSet() { // our func
-        //TODO implement
-        if(!dealer.isTerminated()) {
-            synchronized (dealer) {
-                dealer.addPlayerToQueue(this);
-                if (dealer.isSleeping()) {
-                    dealer.getDealerThread().interrupt();
-                }
-                if (!dealer.isTerminated()) {
-                    try {
-                        dealer.wait();
-                    } catch (InterruptedException ignored) {}
-                }
-            }
+        if(dealer.isTerminated())
+            return;
+        int[] slots = tokens.snapshot();
+        int[] cards = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            Integer card = table.slotToCard[slots[i]];
+            cards[i] = card == null ? -1 : card;
         }
+
+        awaitingVerdict = true;
+        dealer.submitClaim(new Claim(id, slots, cards));
+        while (awaitingVerdict && !terminate && !dealer.isTerminated())
+            LockSupport.park(this);
     }
 
+    /**
+     * Called by the dealer when the player's claim was verified (and the point or penalty, if any, was given).
+     */
+    public void claimVerified() {
+        awaitingVerdict = false;
+        wake(playerThread);
+        wake(aiThread);
+    }
 
-    public LinkedList<Integer> getTokens() {
-        synchronized (tokensLock) {
-            return tokens;
-        }
+    /**
+     * Unparks a thread of the player (if it was started).
+     */
+    private static void wake(Thread thread) {
+        if (thread != null)
+            LockSupport.unpark(thread);
     }
 
+
+    /**
+     * @return - a copy of the slots of the player's tokens.
+     */
+    public int[] getTokens() {
+        return tokens.snapshot();
+    }
+
+    /**
+     * Places a token of the player on a slot. Only the slot is locked, so players on other slots are not blocked.
+     */
     public void placeToken(int slot){
-        synchronized (table) {
-            synchronized (tokensLock) {
-                table.placeToken(id, slot);
+        table.lockSlot(slot);
+        try {
+            if (table.placeToken(id, slot)) {
                 tokens.add(slot);
+                wake(aiThread);
             }
+        } finally {
+            table.unlockSlot(slot);
         }
     }
 
     public void removeToken(int slot){
-        synchronized (table) {
-            synchronized (tokensLock) {
-                table.removeToken(id, slot);
-                if(tokens.indexOf(slot) > -1)
-                    tokens.remove(tokens.indexOf(slot));
-            }
+        table.lockSlot(slot);
+        try {
+            table.removeToken(id, slot);
+            if (tokens.remove(slot))
+                wake(aiThread);
+        } finally {
+            table.unlockSlot(slot);
         }
     }
 
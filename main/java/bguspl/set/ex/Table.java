@@ -2,16 +2,21 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the data that is visible to the player.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv the card and the tokens of a slot change only while its lock (slotLocks[slot]) is held
  */
 public class Table {
 
@@ -30,8 +35,37 @@ public class Table {
      */
     protected final Integer[] cardToSlot; // slot per card (if any)
 
-    protected final LinkedList<Integer>[] slotToTokens; //the tokens in slot
+    /**
+     * The tokens in each slot, as a bitset of the players owning them: the bit of a player in a slot is bit
+     * (player % 64) of slotToTokens[slot * tokenWords + player / 64].
+     */
+    protected final AtomicLongArray slotToTokens;
+
+    /**
+     * The number of 64 bit words in the token bitset of a slot (1 for up to 64 players).
+     */
+    private final int tokenWords;
+
+    /**
+     * The number of changes of the cards on the table so far (incremented after every change, under its slot locks).
+     */
+    private final AtomicLong cardChanges = new AtomicLong();
 
+    /**
+     * A lock per slot, guarding the card and the tokens in the slot (so players on different slots do not contend).
+     * Several slots are always locked in ascending order.
+     */
+    private final ReentrantLock[] slotLocks;
+
+    /**
+     * The legal sets on the table, as sorted arrays of slots (an immutable snapshot, replaced when the cards change).
+     */
+    private volatile List<int[]> hints = Collections.emptyList();
+
+    /**
+     * Serializes updates of the hints snapshot.
+     */
+    private final Object hintsLock = new Object();
 
     /**
      * Constructor for testing.
@@ -44,9 +78,12 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
-        slotToTokens = new LinkedList[slotToCard.length];
-        for(int i = 0; i < slotToTokens.length; i++)
-            slotToTokens[i] = new LinkedList<Integer>();
+        tokenWords = Math.max(1, (env.config.players + Long.SIZE - 1) / Long.SIZE);
+        slotToTokens = new AtomicLongArray(slotToCard.length * tokenWords);
+        slotLocks = new ReentrantLock[slotToCard.length];
+        for (int i = 0; i < slotLocks.length; i++)
+            slotLocks[i] = new ReentrantLock();
+        initHints();
     }
 
     /**
@@ -62,13 +99,123 @@ public class Table {
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        // the hints and the cards are read together under the slot locks, so they match even while the dealer deals
+        List<int[]> sets;
+        Integer[] cards;
+        lockAllSlots();
+        try {
+            sets = hints;
+            cards = slotToCard.clone();
+        } finally {
+            unlockAllSlots();
+        }
+
+        int[][] features = new int[env.config.featureSize][env.config.featureCount];
+        int[] set = new int[env.config.featureSize];
+        for (int[] slots : sets) {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
-        });
+            for (int i = 0; i < slots.length; i++)
+                set[i] = cards[slots[i]];
+            Arrays.sort(set);
+            env.util.cardsToFeatures(set, features);
+            System.out.println(sb.append("slots: ").append(Arrays.toString(slots)).append(" features: ").append(Arrays.deepToString(features)));
+        }
+    }
+
+    /**
+     * Returns all possible legal sets of cards that are currently on the table.
+     *
+     * @return - an unmodifiable list of the legal sets, each one given as a sorted array of slots (not to be modified).
+     */
+    public List<int[]> getHints() {
+        return hints;
+    }
+
+    /**
+     * @return - the number of changes of the cards on the table so far (read it before reading the cards, to tell
+     *           later whether they changed since).
+     */
+    public long cardChanges() {
+        return cardChanges.get();
+    }
+
+    /**
+     * @return - a read-only snapshot of the cards and the legal sets on the table.
+     */
+    public TableSnapshot snapshot() {
+        int[] cards = new int[slotToCard.length];
+        for (int slot = 0; slot < cards.length; slot++) {
+            Integer card = slotToCard[slot];
+            cards[slot] = card == null ? -1 : card;
+        }
+        return new TableSnapshot(cards, hints);
+    }
+
+    /**
+     * Finds the legal sets among all the cards already on the table (addHints assumes the cards arrive one at a time).
+     */
+    private void initHints() {
+        lockAllSlots(); // the given arrays may be shared with the caller
+        try {
+            List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
+            if (deck.isEmpty()) return;
+            hints = env.util.streamSets(deck).map(set -> Arrays.stream(set).map(c -> cardToSlot[c]).sorted().toArray())
+                    .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+        } finally {
+            unlockAllSlots();
+        }
+    }
+
+    /**
+     * Adds the legal sets formed by the card in a slot and the other cards on the table to the hints.
+     *
+     * @param slot - the slot of the newly placed card.
+     */
+    private void addHints(int slot) {
+        int card = slotToCard[slot];
+        List<int[]> found = new ArrayList<>();
+        if (env.config.featureSize == 3) {
+            // complete the card with every other card on the table to the unique third card of their set
+            int[] pair = {card, 0};
+            for (int other = 0; other < slotToCard.length; other++) {
+                if (other == slot || slotToCard[other] == null) continue;
+                pair[1] = slotToCard[other];
+                int completion = env.util.completeSet(pair);
+                Integer third = completion >= 0 ? cardToSlot[completion] : null;
+                if (third != null && third > other) { // so every set is found once
+                    int[] slots = {slot, other, third};
+                    Arrays.sort(slots);
+                    found.add(slots);
+                }
+            }
+        } else {
+            List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
+            env.util.streamSets(deck).filter(set -> Arrays.stream(set).anyMatch(c -> c == card))
+                    .forEach(set -> found.add(Arrays.stream(set).map(c -> cardToSlot[c]).sorted().toArray()));
+        }
+        if (found.isEmpty()) return;
+
+        synchronized (hintsLock) {
+            List<int[]> updated = new ArrayList<>(hints);
+            updated.addAll(found);
+            hints = Collections.unmodifiableList(updated);
+        }
+    }
+
+    /**
+     * Removes the legal sets containing the card in a slot from the hints.
+     *
+     * @param slot - the slot of the card being removed.
+     */
+    private void removeHints(int slot) {
+        synchronized (hintsLock) {
+            List<int[]> updated = new ArrayList<>(hints.size());
+            for (int[] slots : hints)
+                if (Arrays.stream(slots).noneMatch(s -> s == slot))
+                    updated.add(slots);
+            if (updated.size() < hints.size())
+                hints = Collections.unmodifiableList(updated);
+        }
     }
 
     /**
@@ -84,6 +231,57 @@ public class Table {
         return cards;
     }
 
+    /**
+     * Locks a slot, waiting until it is available.
+     *
+     * @param slot - the slot to lock.
+     */
+    public void lockSlot(int slot) {
+        slotLocks[slot].lock();
+    }
+
+    /**
+     * @param slot - the slot to unlock (locked by the current thread).
+     */
+    public void unlockSlot(int slot) {
+        slotLocks[slot].unlock();
+    }
+
+    /**
+     * Locks several slots in ascending order (so threads locking overlapping slots cannot deadlock).
+     *
+     * @param slots - the slots to lock.
+     * @return - the locked slots in ascending order, to be passed to unlockSlots.
+     */
+    public int[] lockSlots(int[] slots) {
+        int[] sorted = slots.clone();
+        Arrays.sort(sorted);
+        for (int slot : sorted)
+            slotLocks[slot].lock();
+        return sorted;
+    }
+
+    /**
+     * @param slots - the slots to unlock (locked by the current thread).
+     */
+    public void unlockSlots(int[] slots) {
+        for (int i = slots.length - 1; i >= 0; i--)
+            slotLocks[slots[i]].unlock();
+    }
+
+    /**
+     * Locks all the slots (e.g. to reshuffle the table).
+     */
+    public void lockAllSlots() {
+        for (ReentrantLock lock : slotLocks)
+            lock.lock();
+    }
+
+    public void unlockAllSlots() {
+        for (int i = slotLocks.length - 1; i >= 0; i--)
+            slotLocks[i].unlock();
+    }
+
     /**
      * Places a card on the table in a grid slot.
      * @param card - the card id to place in the slot.
@@ -95,10 +293,19 @@ public class Table {
         try {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
-        // TODO implement
-        env.ui.placeCard(card,slot);
+        lockSlot(slot);
+        try {
+            if (slotToCard[slot] != null)
+                removeHints(slot);
+            cardToSlot[card] = slot;
+            slotToCard[slot] = card;
+            addHints(slot);
+            cardChanges.incrementAndGet();
+            // TODO implement
+            env.ui.placeCard(card,slot);
+        } finally {
+            unlockSlot(slot);
+        }
     }
 
     /**
@@ -111,26 +318,106 @@ public class Table {
         } catch (InterruptedException ignored) {}
 
         // TODO implement
-        env.ui.removeTokens(slot);
-        env.ui.removeCard(slot);
-        Integer card = slotToCard[slot];
-        if (card != null) {
-            cardToSlot[card] = null;
-            slotToTokens[slot].clear();
+        lockSlot(slot);
+        try {
+            env.ui.removeTokens(slot);
+            env.ui.removeCard(slot);
+            Integer card = slotToCard[slot];
+            if (card != null) {
+                removeHints(slot);
+                cardToSlot[card] = null;
+                for (int word = slot * tokenWords; word < (slot + 1) * tokenWords; word++)
+                    slotToTokens.set(word, 0L);
+            }
+            slotToCard[slot] = null;
+            cardChanges.incrementAndGet();
+        } finally {
+            unlockSlot(slot);
+        }
+    }
+
+    /**
+     * Places several cards on the table at once: the slots are updated under their locks and the user interface is
+     * updated once for all of them.
+     * @param cards - the card ids to place.
+     * @param slots - the slot of each card.
+     *
+     * @post - the cards placed are on the table, in their assigned slots.
+     */
+    public void placeCards(int[] cards, int[] slots) {
+        if (slots.length == 0) return;
+        delay(slots.length);
+        int[] locked = lockSlots(slots);
+        try {
+            for (int i = 0; i < slots.length; i++) {
+                int slot = slots[i];
+                if (slotToCard[slot] != null)
+                    removeHints(slot);
+                cardToSlot[cards[i]] = slot;
+                slotToCard[slot] = cards[i];
+                addHints(slot);
+            }
+            cardChanges.incrementAndGet();
+            env.ui.placeCards(cards, slots);
+        } finally {
+            unlockSlots(locked);
+        }
+    }
+
+    /**
+     * Removes the cards (and the tokens on them) from several grid slots at once, updating the user interface once
+     * for all of them. Unlike placeCards it does not wait the table delay, as its caller usually holds the slot locks
+     * already: the caller waits it with delay before locking the slots, so the players are not blocked meanwhile.
+     * @param slots - the slots from which to remove the cards.
+     */
+    public void removeCards(int[] slots) {
+        if (slots.length == 0) return;
+        int[] locked = lockSlots(slots);
+        try {
+            for (int slot : slots) {
+                Integer card = slotToCard[slot];
+                if (card != null) {
+                    removeHints(slot);
+                    cardToSlot[card] = null;
+                    for (int word = slot * tokenWords; word < (slot + 1) * tokenWords; word++)
+                        slotToTokens.set(word, 0L);
+                }
+                slotToCard[slot] = null;
+            }
+            cardChanges.incrementAndGet();
+            env.ui.removeCards(slots);
+        } finally {
+            unlockSlots(locked);
         }
-        slotToCard[slot] = null;
+    }
+
+    /**
+     * Waits the table delay of placing or removing a number of cards. Should not be called while holding slot locks.
+     * @param cards - the number of cards.
+     */
+    public void delay(int cards) {
+        try {
+            Thread.sleep(env.config.tableDelayMillis * cards);
+        } catch (InterruptedException ignored) {}
     }
 
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff the token was placed (i.e. there is a card in the slot).
      */
-    public synchronized void placeToken(int player, int slot) {
+    public boolean placeToken(int player, int slot) {
         // TODO implement
-        if(slotToCard[slot] != null) {
-            slotToTokens[slot].add(player);
+        lockSlot(slot);
+        try {
+            if (slotToCard[slot] == null)
+                return false;
+            setToken(player, slot);
             env.ui.placeToken(player, slot);
+            return true;
+        } finally {
+            unlockSlot(slot);
         }
     }
 
@@ -142,10 +429,75 @@ public class Table {
      */
     public boolean removeToken(int player, int slot) {
         // TODO implement
-        if (!slotToTokens[slot].contains(player))
-            return false;
-        env.ui.removeToken(player, slot);
-        slotToTokens[slot].remove(slotToTokens[slot].indexOf(player));
+        lockSlot(slot);
+        try {
+            if (!clearToken(player, slot))
+                return false;
+            env.ui.removeToken(player, slot);
+            return true;
+        } finally {
+            unlockSlot(slot);
+        }
+    }
+
+    /**
+     * @param player - the player.
+     * @param slot   - the slot.
+     * @return       - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return (slotToTokens.get(slot * tokenWords + player / Long.SIZE) & (1L << player)) != 0;
+    }
+
+    /**
+     * Iterates over the owners of the tokens on a slot, e.g.
+     * for (int p = nextTokenOwner(slot, 0); p >= 0; p = nextTokenOwner(slot, p + 1)).
+     *
+     * @param slot - the slot.
+     * @param from - the first player id to look at.
+     * @return     - the smallest player id >= from with a token on the slot (-1 if none).
+     */
+    public int nextTokenOwner(int slot, int from) {
+        int base = slot * tokenWords;
+        for (int word = from / Long.SIZE; word < tokenWords; word++) {
+            long bits = slotToTokens.get(base + word);
+            if (word == from / Long.SIZE)
+                bits &= -1L << from; // the shift distance is taken modulo 64
+            if (bits != 0)
+                return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        }
+        return -1;
+    }
+
+    /**
+     * Atomically sets the bit of a player's token on a slot.
+     *
+     * @return - true iff the token was not there before.
+     */
+    private boolean setToken(int player, int slot) {
+        int index = slot * tokenWords + player / Long.SIZE;
+        long bit = 1L << player;
+        long bits;
+        do {
+            bits = slotToTokens.get(index);
+            if ((bits & bit) != 0) return false;
+        } while (!slotToTokens.compareAndSet(index, bits, bits | bit));
+        return true;
+    }
+
+    /**
+     * Atomically clears the bit of a player's token on a slot.
+     *
+     * @return - true iff the token was there before.
+     */
+    private boolean clearToken(int player, int slot) {
+        int index = slot * tokenWords + player / Long.SIZE;
+        long bit = 1L << player;
+        long bits;
+        do {
+            bits = slotToTokens.get(index);
+            if ((bits & bit) == 0) return false;
+        } while (!slotToTokens.compareAndSet(index, bits, bits & ~bit));
         return true;
     }
 }
@@ -0,0 +1,38 @@
+package bguspl.set.ex;
+
+import java.util.List;
+
+/**
+ * A read-only snapshot of the table, given to the AI strategies: the card in each slot and the legal sets.
+ * The cards and the sets are taken at about the same time, but not atomically (the dealer may change the table
+ * meanwhile), so a strategy may act on a slightly stale table, just like a human player.
+ */
+public final class TableSnapshot {
+
+    private final int[] cards;
+
+    /**
+     * The legal sets on the table, as sorted arrays of slots (not to be modified).
+     */
+    public final List<int[]> sets;
+
+    TableSnapshot(int[] cards, List<int[]> sets) {
+        this.cards = cards;
+        this.sets = sets;
+    }
+
+    /**
+     * @return - the number of slots on the table.
+     */
+    public int slots() {
+        return cards.length;
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - the card in the slot (-1 if none).
+     */
+    public int card(int slot) {
+        return cards[slot];
+    }
+}
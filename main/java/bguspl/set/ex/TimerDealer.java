@@ -2,21 +2,23 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public class TimerDealer implements Runnable {
     private Env env;
     private volatile Boolean terminate;
 
-    private Thread timerDealerThread;
+    private volatile Thread timerDealerThread;
 
     private long reshuffleTime;
 
     private volatile boolean shouldReset;
 
-    private ArrayList<Player> frozenPlayers;
-
-    public final Object frozenPlayersLock = new Object();
+    /**
+     * The freezes of the players, displayed and ended by the ticker.
+     */
+    private final FreezeScheduler freezes;
 
     private final int zero = 0;
 
@@ -24,22 +26,55 @@ public class TimerDealer implements Runnable {
 
     private Dealer dealer;
 
+    /**
+     * What the timer display currently shows.
+     */
+    private static final int nothingShown = 0, countdownShown = 1, warningShown = 2, elapsedShown = 3;
+
+    private int shownMode = nothingShown;
+
+    /**
+     * The displayed value of the timer (in the display's resolution, e.g. whole seconds for the countdown).
+     */
+    private long shownValue;
+
+    /**
+     * The nanoseconds between ticks, normally and inside the turn timeout warning window.
+     */
+    private final long tickNanos, warningTickNanos;
+
 
     public TimerDealer(Env env, Dealer dealer){
         this.env = env;
         terminate = shouldReset = false;
         reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-        frozenPlayers = new ArrayList<Player>();
+        freezes = new FreezeScheduler(env);
         this.dealer = dealer;
-
+        tickNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, env.config.timerRefreshHz);
+        warningTickNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, env.config.timerWarningRefreshHz);
     }
+
+    /**
+     * Ticks at a fixed rate (faster inside the warning window) and parks in between, so the timer costs almost no CPU.
+     * A reset, termination or a freeze ending before the next tick wakes the ticker immediately.
+     */
     @Override
     public void run() {
         System.out.println("Thread DealerTimer is starting");
         timerDealerThread = Thread.currentThread();
+        long nextTick = System.nanoTime();
         while(!terminate){
             updateTimerDisplay(shouldReset);
-            updatePlayersFreezeTimer();
+            freezes.expire();
+
+            long now = System.nanoTime();
+            if (nextTick <= now) { // not woken early by a reset: schedule the next tick (skipping missed ticks, if any)
+                long period = shownMode == warningShown ? warningTickNanos : tickNanos;
+                nextTick = nextTick + period > now ? nextTick + period : now + period;
+            }
+            long delay;
+            while (!terminate && !shouldReset && (delay = Math.min(nextTick - System.nanoTime(), freezes.nanosToNextEvent())) > zero)
+                LockSupport.parkNanos(this, delay);
         }
         if(joinMe != null){
             if(joinMe.playerThread != null) try{ joinMe.playerThread.join();}catch (InterruptedException ignored){}
@@ -55,54 +90,70 @@ public class TimerDealer implements Runnable {
         // TODO implement
         if(reset) {
             shouldReset = false;
-            env.ui.setCountdown(env.config.turnTimeoutMillis, false);
             reshuffleTime = System.currentTimeMillis()+env.config.turnTimeoutMillis;
+            show(countdownShown, env.config.turnTimeoutMillis / 1000);
+            env.ui.setCountdown(env.config.turnTimeoutMillis, false);
         }
         else {
             long currentTime = reshuffleTime - System.currentTimeMillis();
             if(currentTime >= zero) {
-                if (currentTime <= env.config.turnTimeoutWarningMillis)
-                    env.ui.setCountdown(currentTime, true);
-                else
+                if (currentTime <= env.config.turnTimeoutWarningMillis) {
+                    if (show(warningShown, currentTime / 10)) // the warning is displayed in hundredths of a second
+                        env.ui.setCountdown(currentTime, true);
+                }
+                else if (show(countdownShown, currentTime / 1000))
                     env.ui.setCountdown(currentTime, false);
             }
             else {
-                //System.out.println("timer dealer: " + dealer.getElapsedTime());
-                env.ui.setElapsed(System.currentTimeMillis() - dealer.getElapsedTime());
+                long elapsed = System.currentTimeMillis() - dealer.getElapsedTime();
+                if (show(elapsedShown, elapsed / 1000))
+                    env.ui.setElapsed(elapsed);
             }
         }
 
     }
 
-    private void updatePlayersFreezeTimer(){
-        ArrayList<Player> remove = new ArrayList<>();
-        synchronized (frozenPlayersLock) {
-            if (frozenPlayers.isEmpty())
-                return;
-            for (Player p : frozenPlayers) {
-                long showInMillis = p.getFreezeTime() - System.currentTimeMillis();
-                env.ui.setFreeze(p.id, showInMillis);
-                if (showInMillis <= zero) {
-                    remove.add(p);
-                }
-            }
-            for (Player p : remove)
-                frozenPlayers.remove(p);
-        }
+    /**
+     * Records what the timer display shows.
+     *
+     * @return - true iff the display changes (i.e. the ui should be updated).
+     */
+    private boolean show(int mode, long value) {
+        if (mode == shownMode && value == shownValue)
+            return false;
+        shownMode = mode;
+        shownValue = value;
+        return true;
     }
 
     public void terminate(){
         terminate = true;
+        wakeUp();
     }
 
     public void resetTime(){
         shouldReset = true;
+        wakeUp();
     }
 
-    public void freezePlayer(Player player){
-        synchronized (frozenPlayersLock) {
-            frozenPlayers.add(player);
-        }
+    /**
+     * Freezes a player; the player is unfrozen (Player.unfreeze) by the ticker when the freeze ends.
+     *
+     * @param player - the player to freeze.
+     * @param millis - the length of the freeze.
+     */
+    public void freezePlayer(Player player, long millis){
+        if (freezes.freeze(player, millis))
+            wakeUp();
+    }
+
+    /**
+     * Wakes the ticker up before its next tick.
+     */
+    private void wakeUp() {
+        Thread thread = timerDealerThread;
+        if (thread != null)
+            LockSupport.unpark(thread);
     }
 
     public void setJoinMe(Player one){
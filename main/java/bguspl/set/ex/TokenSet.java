@@ -0,0 +1,106 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The slots of a player's tokens: a set of at most three slots, packed in a single atomic long (no boxing and no
+ * locking). Each slot takes a field of 21 bits holding slot + 1 (0 for an empty field).
+ */
+public class TokenSet {
+
+    /**
+     * The maximal number of tokens of a player.
+     */
+    public static final int capacity = 3;
+
+    private static final int fieldBits = 21;
+    private static final long fieldMask = (1L << fieldBits) - 1;
+
+    /**
+     * The packed fields.
+     */
+    private final AtomicLong fields = new AtomicLong();
+
+    private static long field(long bits, int i) {
+        return (bits >>> (i * fieldBits)) & fieldMask;
+    }
+
+    /**
+     * @param bits - the packed fields.
+     * @param slot - the slot.
+     * @return - the index of the field holding the slot (-1 if none).
+     */
+    private static int indexOf(long bits, int slot) {
+        for (int i = 0; i < capacity; i++)
+            if (field(bits, i) == slot + 1)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Adds a slot to the set.
+     *
+     * @param slot - the slot (between 0 and 2^21 - 2).
+     * @return - true iff the slot was added (i.e. it was not in the set and the set was not full).
+     */
+    public boolean add(int slot) {
+        long bits, updated;
+        do {
+            bits = fields.get();
+            int free = indexOf(bits, -1);
+            if (free == -1 || indexOf(bits, slot) != -1) return false;
+            updated = bits | ((long) (slot + 1) << (free * fieldBits));
+        } while (!fields.compareAndSet(bits, updated));
+        return true;
+    }
+
+    /**
+     * Removes a slot from the set.
+     *
+     * @param slot - the slot.
+     * @return - true iff the slot was in the set.
+     */
+    public boolean remove(int slot) {
+        long bits, updated;
+        do {
+            bits = fields.get();
+            int index = indexOf(bits, slot);
+            if (index == -1) return false;
+            updated = bits & ~(fieldMask << (index * fieldBits));
+        } while (!fields.compareAndSet(bits, updated));
+        return true;
+    }
+
+    public boolean contains(int slot) {
+        return indexOf(fields.get(), slot) != -1;
+    }
+
+    public int size() {
+        long bits = fields.get();
+        int size = 0;
+        for (int i = 0; i < capacity; i++)
+            if (field(bits, i) != 0)
+                ++size;
+        return size;
+    }
+
+    public void clear() {
+        fields.set(0L);
+    }
+
+    /**
+     * @return - a consistent copy of the slots in the set (taken from a single read of the set).
+     */
+    public int[] snapshot() {
+        long bits = fields.get();
+        int[] slots = new int[capacity];
+        int size = 0;
+        for (int i = 0; i < capacity; i++) {
+            long field = field(bits, i);
+            if (field != 0)
+                slots[size++] = (int) field - 1;
+        }
+        return size == capacity ? slots : Arrays.copyOf(slots, size);
+    }
+}